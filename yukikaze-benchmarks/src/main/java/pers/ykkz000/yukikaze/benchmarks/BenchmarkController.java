@@ -0,0 +1,43 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.benchmarks;
+
+import pers.ykkz000.yukikaze.framework.annotation.Bean;
+import pers.ykkz000.yukikaze.framework.annotation.BeanConstructor;
+import pers.ykkz000.yukikaze.framework.annotation.BindCommand;
+import pers.ykkz000.yukikaze.framework.annotation.Controller;
+import pers.ykkz000.yukikaze.framework.annotation.ParamVariable;
+
+/**
+ * Command served by {@link TransportBenchmark}.
+ *
+ * @author ykkz000
+ */
+@Bean(name = "benchmarkController", autoLoad = true)
+@Controller(prefix = "bench.")
+public class BenchmarkController {
+    @BeanConstructor
+    public BenchmarkController() {
+    }
+
+    @BindCommand("sum")
+    public long sum(@ParamVariable("a") int a, @ParamVariable("b") long b) {
+        return a + b;
+    }
+}
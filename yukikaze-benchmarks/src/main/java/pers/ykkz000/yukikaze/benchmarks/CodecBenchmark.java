@@ -0,0 +1,81 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pers.ykkz000.yukikaze.framework.codec.BinaryCommandCodec;
+import pers.ykkz000.yukikaze.framework.codec.CommandCodec;
+import pers.ykkz000.yukikaze.framework.codec.JsonCommandCodec;
+import pers.ykkz000.yukikaze.framework.route.CommandArguments;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the binary codec with the JSON codec: encoded sizes, then the throughput of encoding arguments, decoding
+ * them and reading every value through the typed getters, and encoding and decoding a result of 1000 rows.
+ *
+ * @author ykkz000
+ */
+public class CodecBenchmark {
+    public static void main(String[] args) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Object> arguments = new LinkedHashMap<>();
+        arguments.put("id", 42);
+        arguments.put("timestamp", 1_700_000_000_000L);
+        arguments.put("ratio", 0.75);
+        arguments.put("enabled", true);
+        arguments.put("name", "yukikaze");
+        List<Row> rows = IntStream.range(0, 1000).mapToObj(i -> new Row(i, "row-" + i, i * 0.5)).toList();
+        for (CommandCodec codec : List.of(new JsonCommandCodec(objectMapper), new BinaryCommandCodec(objectMapper))) {
+            String name = codec.getClass().getSimpleName();
+            byte[] encodedArguments = encodeArguments(codec, arguments);
+            byte[] encodedRows = encodeResult(codec, rows);
+            System.out.printf("%s: arguments %d bytes, 1000 rows %d bytes%n", name, encodedArguments.length, encodedRows.length);
+            Harness.run(name + " encode arguments", 1, () -> encodeArguments(codec, arguments).length);
+            Harness.run(name + " decode and read arguments", 1, () -> {
+                CommandArguments decoded = codec.decodeArguments(ByteBuffer.wrap(encodedArguments));
+                return decoded.getInt("id") + decoded.getLong("timestamp") + (long) decoded.getDouble("ratio")
+                        + (decoded.getBoolean("enabled") ? 1 : 0) + decoded.getString("name").length();
+            });
+            Harness.run(name + " encode 1000 rows", 1, () -> encodeResult(codec, rows).length);
+            Harness.run(name + " decode 1000 rows", 1, () -> codec.decodeResult(ByteBuffer.wrap(encodedRows)).hashCode());
+        }
+    }
+
+    private static byte[] encodeArguments(CommandCodec codec, Map<String, ?> arguments) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        codec.encodeArguments(arguments, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeResult(CommandCodec codec, Object result) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        codec.encodeResult(result, out);
+        return out.toByteArray();
+    }
+
+    public record Row(int id, String name, double value) {
+    }
+}
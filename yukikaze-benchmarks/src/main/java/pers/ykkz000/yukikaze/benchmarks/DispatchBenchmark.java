@@ -0,0 +1,103 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.benchmarks;
+
+import pers.ykkz000.yukikaze.framework.ApplicationContext;
+import pers.ykkz000.yukikaze.framework.annotation.ParamVariable;
+import pers.ykkz000.yukikaze.framework.route.CommandArguments;
+import pers.ykkz000.yukikaze.framework.route.CommandRouter;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Compares the dispatch of handlers compiled into typed invokers with the reflective fallback, for {@code int},
+ * {@code long}, {@code double} and {@code String} parameters. The same methods are registered twice: once on a public
+ * class, which gets a generated invoker, and once on a package-private class, which is invoked by reflection.
+ *
+ * @author ykkz000
+ */
+public class DispatchBenchmark {
+    public static void main(String[] args) throws Exception {
+        CommandRouter router = new ApplicationContext.Builder().build().getCommandRouter();
+        register(router, "compiled.", new CompiledHandlers());
+        register(router, "reflective.", new ReflectiveHandlers());
+        Map<String, CommandArguments> cases = Map.of(
+                "intValue", CommandArguments.of(Map.of("value", "12345")),
+                "longValue", CommandArguments.of(Map.of("value", "12345678901")),
+                "doubleValue", CommandArguments.of(Map.of("value", "3.25")),
+                "stringValue", CommandArguments.of(Map.of("value", "yukikaze")));
+        for (String handler : new String[]{"intValue", "longValue", "doubleValue", "stringValue"}) {
+            CommandArguments arguments = cases.get(handler);
+            for (String prefix : new String[]{"compiled.", "reflective."}) {
+                String command = prefix + handler;
+                Harness.run(command, 1, () -> router.execute(command, arguments).length());
+            }
+        }
+    }
+
+    private static void register(CommandRouter router, String prefix, Object handlers) {
+        for (Method method : handlers.getClass().getDeclaredMethods()) {
+            method.setAccessible(true);
+            router.addRoute(prefix + method.getName(), handlers, method);
+        }
+    }
+
+    /**
+     * Handlers of a public class, dispatched through generated invokers.
+     */
+    public static class CompiledHandlers {
+        public int intValue(@ParamVariable("value") int value) {
+            return value + 1;
+        }
+
+        public long longValue(@ParamVariable("value") long value) {
+            return value + 1;
+        }
+
+        public double doubleValue(@ParamVariable("value") double value) {
+            return value * 2;
+        }
+
+        public String stringValue(@ParamVariable("value") String value) {
+            return value;
+        }
+    }
+
+    /**
+     * The same handlers on a package-private class, dispatched by reflection.
+     */
+    static class ReflectiveHandlers {
+        public int intValue(@ParamVariable("value") int value) {
+            return value + 1;
+        }
+
+        public long longValue(@ParamVariable("value") long value) {
+            return value + 1;
+        }
+
+        public double doubleValue(@ParamVariable("value") double value) {
+            return value * 2;
+        }
+
+        public String stringValue(@ParamVariable("value") String value) {
+            return value;
+        }
+    }
+}
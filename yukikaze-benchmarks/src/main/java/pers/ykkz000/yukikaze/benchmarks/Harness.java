@@ -0,0 +1,149 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measurement loop shared by the benchmarks. A case runs a few warm-up iterations, then the measured iterations, each
+ * for a fixed time on a given number of threads, and prints the throughput of the measured iterations. Results of the
+ * operation are summed into {@link #sink} so the JIT cannot drop the work. The loop is tuned with the system
+ * properties {@code bench.warmup} and {@code bench.iterations} (counts) and {@code bench.time} (milliseconds per
+ * iteration).
+ *
+ * @author ykkz000
+ */
+final class Harness {
+    private static final int WARMUP_ITERATIONS = Integer.getInteger("bench.warmup", 3);
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+    private static final long ITERATION_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("bench.time", 1000));
+    private static final int CHECK_INTERVAL = 64;
+    static volatile long sink;
+
+    private Harness() {
+    }
+
+    /**
+     * Operation measured by {@link #run}.
+     */
+    @FunctionalInterface
+    interface Operation {
+        /**
+         * Run the operation once.
+         *
+         * @return Any value depending on the work done.
+         * @throws Exception Thrown if the operation fails, which stops the benchmark.
+         */
+        long run() throws Exception;
+    }
+
+    /**
+     * Measure an operation.
+     *
+     * @param name      Name of the case.
+     * @param threads   Number of threads running the operation.
+     * @param operation Operation.
+     * @return Mean throughput of the measured iterations, in operations per second.
+     */
+    static double run(String name, int threads, Operation operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(threads, operation);
+        }
+        double total = 0;
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            double throughput = iteration(threads, operation);
+            total += throughput;
+            min = Math.min(min, throughput);
+            max = Math.max(max, throughput);
+        }
+        double mean = total / ITERATIONS;
+        System.out.printf("%-48s %3d threads %14.0f ops/s (min %.0f, max %.0f) %10.1f ns/op%n",
+                name, threads, mean, min, max, threads * 1e9 / mean);
+        return mean;
+    }
+
+    /**
+     * Get the thread counts of a scaling benchmark: powers of two from 1 to the given maximum.
+     *
+     * @param max Largest thread count.
+     * @return Thread counts.
+     */
+    static List<Integer> threadCounts(int max) {
+        List<Integer> counts = new ArrayList<>();
+        for (int threads = 1; threads <= max; threads *= 2) {
+            counts.add(threads);
+        }
+        return counts;
+    }
+
+    private static double iteration(int threads, Operation operation) {
+        CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        LongAdder operations = new LongAdder();
+        long[] deadline = new long[1];
+        List<Thread> workers = new ArrayList<>(threads);
+        Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                long count = 0;
+                long result = 0;
+                try {
+                    barrier.await();
+                    long end = deadline[0];
+                    do {
+                        for (int i = 0; i < CHECK_INTERVAL; i++) {
+                            result += operation.run();
+                        }
+                        count += CHECK_INTERVAL;
+                    } while (System.nanoTime() - end < 0);
+                } catch (Throwable e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+                operations.add(count);
+                sink += result;
+            }, "benchmark-" + t);
+            workers.add(worker);
+        }
+        workers.forEach(Thread::start);
+        long start = System.nanoTime();
+        deadline[0] = start + ITERATION_NANOS;
+        try {
+            barrier.await();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Benchmark interrupted", e);
+        }
+        long elapsed = System.nanoTime() - start;
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw new IllegalStateException("Benchmark operation failed", failure[0]);
+            }
+        }
+        return operations.sum() * 1e9 / elapsed;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.benchmarks;
+
+import org.apache.commons.math3.util.Pair;
+import pers.ykkz000.yukikaze.framework.ApplicationContext;
+import pers.ykkz000.yukikaze.framework.annotation.ParamVariable;
+import pers.ykkz000.yukikaze.framework.route.CommandArguments;
+import pers.ykkz000.yukikaze.framework.route.CommandRouter;
+import pers.ykkz000.yukikaze.framework.route.RouteTree;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures route lookups with 10k registered routes, half of them flat commands and half path-style commands with a
+ * placeholder. {@link RouteTree#find} is measured for both kinds on one thread, then lookups are run on 1 to 64
+ * threads (or the first program argument) against a {@link Hashtable} of the flat commands, the route table this
+ * replaced, against {@link RouteTree#find} and through {@link CommandRouter#execute}.
+ *
+ * @author ykkz000
+ */
+public class RouteBenchmark {
+    private static final int ROUTES = 5000;
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        String[] flat = new String[ROUTES];
+        String[] paths = new String[ROUTES];
+        Hashtable<String, Integer> table = new Hashtable<>();
+        RouteTree<Integer> tree = new RouteTree<>();
+        CommandRouter router = new ApplicationContext.Builder().build().getCommandRouter();
+        RouteHandlers handlers = new RouteHandlers();
+        List<Pair<String, Method>> routes = new ArrayList<>();
+        Method get = RouteHandlers.class.getMethod("get");
+        Method cancel = RouteHandlers.class.getMethod("cancel", int.class);
+        for (int i = 0; i < ROUTES; i++) {
+            flat[i] = "service" + i + ".get";
+            paths[i] = "service" + i + "/order/" + i + "/cancel";
+            table.put(flat[i], i);
+            tree.insert(flat[i], i);
+            tree.insert("service" + i + "/order/{id}/cancel", i);
+            routes.add(new Pair<>(flat[i], get));
+            routes.add(new Pair<>("service" + i + "/order/{id}/cancel", cancel));
+        }
+        router.addRoutes(handlers, routes);
+        int[] captures = new int[2];
+        Harness.run("RouteTree.find flat", 1, () -> tree.find(flat[ThreadLocalRandom.current().nextInt(ROUTES)], captures).value());
+        Harness.run("RouteTree.find placeholder", 1, () -> tree.find(paths[ThreadLocalRandom.current().nextInt(ROUTES)], captures).value());
+        ThreadLocal<int[]> threadCaptures = ThreadLocal.withInitial(() -> new int[2]);
+        CommandArguments noArguments = CommandArguments.of(Map.of());
+        for (int threads : Harness.threadCounts(maxThreads)) {
+            Harness.run("Hashtable.get flat", threads, () -> table.get(flat[ThreadLocalRandom.current().nextInt(ROUTES)]));
+            Harness.run("RouteTree.find flat", threads, () -> tree.find(flat[ThreadLocalRandom.current().nextInt(ROUTES)], threadCaptures.get()).value());
+            Harness.run("CommandRouter.execute flat", threads, () -> router.execute(flat[ThreadLocalRandom.current().nextInt(ROUTES)], noArguments).length());
+            Harness.run("CommandRouter.execute placeholder", threads, () -> router.execute(paths[ThreadLocalRandom.current().nextInt(ROUTES)], noArguments).length());
+        }
+    }
+
+    /**
+     * Handlers bound to the registered routes.
+     */
+    public static class RouteHandlers {
+        public int get() {
+            return 1;
+        }
+
+        public int cancel(@ParamVariable("id") int id) {
+            return id;
+        }
+    }
+}
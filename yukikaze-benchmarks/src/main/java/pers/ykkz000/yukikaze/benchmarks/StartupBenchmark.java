@@ -0,0 +1,54 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.benchmarks;
+
+import pers.ykkz000.yukikaze.framework.ApplicationContext;
+import pers.ykkz000.yukikaze.framework.BeanFactory;
+import pers.ykkz000.yukikaze.framework.ClassPathBeanScanner;
+import pers.ykkz000.yukikaze.framework.index.BeanIndex;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the bean discovery of startup over the same classpath: reading the index generated at build time against
+ * scanning the class files, on the calling thread and in parallel as {@code YukikazeApplication} does. The base
+ * package is the first program argument, defaulting to the package of the benchmarks, whose classes are indexed by
+ * the build.
+ *
+ * @author ykkz000
+ */
+public class StartupBenchmark {
+    public static void main(String[] args) throws Exception {
+        String basePackage = args.length > 0 ? args[0] : StartupBenchmark.class.getPackageName();
+        BeanFactory beanFactory = new ApplicationContext.Builder().build().getBeanFactory();
+        BeanIndex index = new BeanIndex();
+        Optional<List<String>> indexed = index.readBeans(basePackage, StartupBenchmark.class, beanFactory);
+        if (indexed.isEmpty()) {
+            throw new IllegalStateException("The bean index does not cover " + basePackage);
+        }
+        ClassPathBeanScanner scanner = new ClassPathBeanScanner();
+        ClassPathBeanScanner parallelScanner = new ClassPathBeanScanner(ForkJoinPool.commonPool());
+        System.out.printf("%s: %d beans, %d to load automatically%n", basePackage, beanFactory.getBeanDefinitions().size(), indexed.get().size());
+        Harness.run("BeanIndex.readBeans", 1, () -> index.readBeans(basePackage, StartupBenchmark.class, beanFactory).orElseThrow().size());
+        Harness.run("ClassPathBeanScanner.scanBeans", 1, () -> scanner.scanBeans(basePackage, StartupBenchmark.class, beanFactory).size());
+        Harness.run("ClassPathBeanScanner.scanBeans parallel", 1, () -> parallelScanner.scanBeans(basePackage, StartupBenchmark.class, beanFactory).size());
+    }
+}
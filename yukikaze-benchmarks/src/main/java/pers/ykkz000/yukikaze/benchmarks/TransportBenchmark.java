@@ -0,0 +1,282 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.benchmarks;
+
+import com.sun.net.httpserver.HttpServer;
+import pers.ykkz000.yukikaze.framework.ApplicationContext;
+import pers.ykkz000.yukikaze.framework.YukikazeApplication;
+import pers.ykkz000.yukikaze.framework.annotation.EnableModule;
+import pers.ykkz000.yukikaze.framework.annotation.EnableModules;
+import pers.ykkz000.yukikaze.framework.annotation.LoadProperties;
+import pers.ykkz000.yukikaze.framework.codec.BinaryCommandCodec;
+import pers.ykkz000.yukikaze.framework.codec.CommandCodec;
+import pers.ykkz000.yukikaze.framework.codec.JsonCommandCodec;
+import pers.ykkz000.yukikaze.framework.exception.ResponseErrorException;
+import pers.ykkz000.yukikaze.framework.route.CommandRouter;
+import pers.ykkz000.yukikaze.framework.transport.HttpTransportModule;
+import pers.ykkz000.yukikaze.framework.transport.TcpCommandClient;
+import pers.ykkz000.yukikaze.framework.transport.TcpTransportModule;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load generator of the network transports. The application serves {@link BenchmarkController} over the TCP and
+ * HTTP transports configured in {@code benchmark.yml}, and over a {@code com.sun.net.httpserver} server on port
+ * {@value #JDK_HTTP_PORT} as the HTTP baseline. Every client connection runs on its own thread and sends windows of
+ * requests, one request at a time and then pipelined, and waits for all responses of a window before sending the
+ * next. Arguments: connections (default 8), seconds per run (default 10), pipeline depth (default 16).
+ *
+ * @author ykkz000
+ */
+@EnableModules({@EnableModule(TcpTransportModule.class), @EnableModule(HttpTransportModule.class)})
+@LoadProperties(path = "classpath:benchmark.yml")
+public class TransportBenchmark {
+    private static final String HOST = "127.0.0.1";
+    private static final int TCP_PORT = 17420;
+    private static final int HTTP_PORT = 18080;
+    private static final int JDK_HTTP_PORT = 18081;
+    private static final long WARMUP_SECONDS = 2;
+
+    /**
+     * Client connection of a run.
+     */
+    @FunctionalInterface
+    private interface Client {
+        /**
+         * Send a window of requests and wait for all their responses.
+         *
+         * @param depth Number of requests of the window.
+         * @throws Exception Thrown if a request fails.
+         */
+        void roundTrip(int depth) throws Exception;
+    }
+
+    /**
+     * Factory of the client connections of a run.
+     */
+    @FunctionalInterface
+    private interface ClientFactory {
+        Client connect() throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        ApplicationContext context = YukikazeApplication.run(TransportBenchmark.class, args);
+        HttpServer jdkServer = startJdkServer(context.getCommandRouter());
+        try {
+            Map<String, Object> sumArguments = Map.of("a", 1, "b", 20_000_000_000L);
+            for (CommandCodec codec : List.of(new BinaryCommandCodec(context.getObjectMapper()), new JsonCommandCodec(context.getObjectMapper()))) {
+                ClientFactory factory = () -> tcpClient(codec, sumArguments);
+                for (int window : new int[]{1, depth}) {
+                    load("TCP " + codec.getClass().getSimpleName(), connections, seconds, window, factory);
+                }
+            }
+            byte[] request = ("GET /api/bench.sum?a=1&b=20000000000 HTTP/1.1\r\nHost: " + HOST + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            for (int window : new int[]{1, depth}) {
+                load("HTTP yukikaze", connections, seconds, window, () -> httpClient(HTTP_PORT, request));
+                load("HTTP com.sun.net.httpserver", connections, seconds, window, () -> httpClient(JDK_HTTP_PORT, request));
+            }
+        } finally {
+            jdkServer.stop(0);
+        }
+        System.exit(0);
+    }
+
+    private static void load(String name, int connections, int seconds, int depth, ClientFactory factory) throws Exception {
+        run(connections, WARMUP_SECONDS, depth, factory);
+        long requests = run(connections, seconds, depth, factory);
+        System.out.printf("%-40s %3d connections, depth %3d: %12.0f req/s%n", name, connections, depth, (double) requests / seconds);
+    }
+
+    private static long run(int connections, long seconds, int depth, ClientFactory factory) throws Exception {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                results.add(executor.submit(() -> {
+                    Client client = factory.connect();
+                    long requests = 0;
+                    while (System.nanoTime() - end < 0) {
+                        client.roundTrip(depth);
+                        requests += depth;
+                    }
+                    if (client instanceof AutoCloseable closeable) {
+                        closeable.close();
+                    }
+                    return requests;
+                }));
+            }
+            long total = 0;
+            for (Future<Long> result : results) {
+                total += result.get();
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Client tcpClient(CommandCodec codec, Map<String, Object> arguments) throws IOException {
+        TcpCommandClient connection = new TcpCommandClient(new InetSocketAddress(HOST, TCP_PORT), codec);
+        return new TcpClient(connection, arguments);
+    }
+
+    private static Client httpClient(int port, byte[] request) throws IOException {
+        Socket socket = new Socket(HOST, port);
+        socket.setTcpNoDelay(true);
+        return new HttpClient(socket, request);
+    }
+
+    private static HttpServer startJdkServer(CommandRouter router) throws IOException {
+        // Read once by the JDK server; without it, small responses wait for delayed acknowledgements.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress(HOST, JDK_HTTP_PORT), 1024);
+        server.setExecutor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+        server.createContext("/api/", exchange -> {
+            String command = exchange.getRequestURI().getPath().substring("/api/".length());
+            Map<String, String> arguments = new HashMap<>();
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null) {
+                for (String pair : query.split("&")) {
+                    int equals = pair.indexOf('=');
+                    String name = equals < 0 ? pair : pair.substring(0, equals);
+                    String value = equals < 0 ? "" : pair.substring(equals + 1);
+                    arguments.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+                }
+            }
+            int status = 200;
+            String body;
+            try {
+                body = router.execute(command, arguments);
+            } catch (ResponseErrorException e) {
+                status = e.getStatus();
+                body = String.valueOf(e.getMessage());
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private record TcpClient(TcpCommandClient connection, Map<String, Object> arguments) implements Client, AutoCloseable {
+        @Override
+        public void roundTrip(int depth) throws Exception {
+            List<CompletableFuture<Object>> responses = new ArrayList<>(depth);
+            for (int i = 0; i < depth; i++) {
+                responses.add(connection.executeAsync("bench.sum", arguments));
+            }
+            for (CompletableFuture<Object> response : responses) {
+                response.get();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            connection.close();
+        }
+    }
+
+    private static final class HttpClient implements Client, AutoCloseable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+        private final byte[] request;
+        private byte[] window = new byte[0];
+
+        private HttpClient(Socket socket, byte[] request) throws IOException {
+            this.socket = socket;
+            this.out = socket.getOutputStream();
+            this.in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            this.request = request;
+        }
+
+        @Override
+        public void roundTrip(int depth) throws IOException {
+            if (window.length != request.length * depth) {
+                window = new byte[request.length * depth];
+                for (int i = 0; i < depth; i++) {
+                    System.arraycopy(request, 0, window, i * request.length, request.length);
+                }
+            }
+            out.write(window);
+            for (int i = 0; i < depth; i++) {
+                readResponse();
+            }
+        }
+
+        private void readResponse() throws IOException {
+            int status = -1;
+            int contentLength = 0;
+            StringBuilder line = new StringBuilder();
+            while (true) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new EOFException("Connection closed by the server");
+                }
+                if (b != '\n') {
+                    line.append((char) b);
+                    continue;
+                }
+                String header = line.toString().trim();
+                line.setLength(0);
+                if (header.isEmpty()) {
+                    break;
+                }
+                if (status < 0) {
+                    status = Integer.parseInt(header.substring(9, 12));
+                } else if (header.regionMatches(true, 0, "content-length:", 0, 15)) {
+                    contentLength = Integer.parseInt(header.substring(15).trim());
+                }
+            }
+            in.readNBytes(contentLength);
+            if (status != 200) {
+                throw new IOException("Unexpected status " + status);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
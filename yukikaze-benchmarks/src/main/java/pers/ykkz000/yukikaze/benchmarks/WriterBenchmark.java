@@ -0,0 +1,84 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import pers.ykkz000.yukikaze.framework.ApplicationContext;
+import pers.ykkz000.yukikaze.framework.route.CommandArguments;
+import pers.ykkz000.yukikaze.framework.route.CommandRouter;
+import pers.ykkz000.yukikaze.framework.util.JacksonUtil;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the serialization of handler results. {@link ObjectMapper#writeValueAsString} on every result is the path
+ * the prebuilt writers replaced; an {@link ObjectWriter} built once for the declared type is what each handler now
+ * keeps. Both are then measured through {@link CommandRouter#execute} for a handler declaring its result type, one
+ * declaring {@code Object}, which uses the writers cached by runtime class, and the typed handler with Blackbird
+ * registered.
+ *
+ * @author ykkz000
+ */
+public class WriterBenchmark {
+    public static void main(String[] args) throws Exception {
+        OrderHandlers handlers = new OrderHandlers();
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectWriter writer = objectMapper.writerFor(Order.class);
+        Harness.run("ObjectMapper.writeValueAsString", 1, () -> objectMapper.writeValueAsString(handlers.typed()).length());
+        Harness.run("ObjectWriter for Order", 1, () -> writer.writeValueAsString(handlers.typed()).length());
+        CommandRouter router = new ApplicationContext.Builder().build().getCommandRouter();
+        router.addRoute("typed", handlers, OrderHandlers.class.getMethod("typed"));
+        router.addRoute("untyped", handlers, OrderHandlers.class.getMethod("untyped"));
+        ApplicationContext blackbirdContext = new ApplicationContext.Builder().build();
+        if (!JacksonUtil.registerBlackbird(blackbirdContext.getObjectMapper())) {
+            throw new IllegalStateException("Blackbird is not on the class path");
+        }
+        CommandRouter blackbirdRouter = blackbirdContext.getCommandRouter();
+        blackbirdRouter.addRoute("typed", handlers, OrderHandlers.class.getMethod("typed"));
+        CommandArguments noArguments = CommandArguments.of(Map.of());
+        Harness.run("CommandRouter.execute Order", 1, () -> router.execute("typed", noArguments).length());
+        Harness.run("CommandRouter.execute Object", 1, () -> router.execute("untyped", noArguments).length());
+        Harness.run("CommandRouter.execute Order, Blackbird", 1, () -> blackbirdRouter.execute("typed", noArguments).length());
+    }
+
+    public record Line(String sku, int quantity, double price) {
+    }
+
+    public record Order(long id, String customer, double total, List<Line> lines) {
+    }
+
+    /**
+     * Handlers returning the same order, with and without its declared type.
+     */
+    public static class OrderHandlers {
+        private final Order order = new Order(42, "yukikaze", 123.5,
+                IntStream.range(0, 10).mapToObj(i -> new Line("sku-" + i, i + 1, i * 1.25)).toList());
+
+        public Order typed() {
+            return order;
+        }
+
+        public Object untyped() {
+            return order;
+        }
+    }
+}
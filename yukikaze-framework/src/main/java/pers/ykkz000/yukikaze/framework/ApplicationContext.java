@@ -20,13 +20,14 @@ package pers.ykkz000.yukikaze.framework;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Getter;
+import pers.ykkz000.yukikaze.framework.annotation.ProfileStartup;
 import pers.ykkz000.yukikaze.framework.api.AnnotationProcessor;
+import pers.ykkz000.yukikaze.framework.profile.StartupProfiler;
+import pers.ykkz000.yukikaze.framework.property.PropertyStore;
 import pers.ykkz000.yukikaze.framework.route.CommandRouter;
 
 import java.util.ArrayList;
-import java.util.Hashtable;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Application Context.
@@ -47,20 +48,35 @@ public class ApplicationContext {
     @Getter
     private final String[] args;
     @Getter
-    private final Map<String, String> properties;
+    private volatile PropertyStore properties = PropertyStore.EMPTY;
     @Getter
     private final CommandRouter commandRouter;
+    @Getter
+    private final StartupProfiler startupProfiler;
 
     private ApplicationContext(Class<?> mainClass, String[] args) {
         instance = this;
         this.mainClass = mainClass;
         this.args = args;
-        this.commandRouter = new CommandRouter(this);
+        this.startupProfiler = mainClass != null && mainClass.isAnnotationPresent(ProfileStartup.class) ? new StartupProfiler() : StartupProfiler.DISABLED;
         objectMapper = new ObjectMapper();
+        this.commandRouter = new CommandRouter(this);
         annotationProcessors = new ArrayList<>();
         annotationProcessors.add(new BaseAnnotationProcessor(this));
         beanFactory = new BeanFactory(this);
-        properties = new Hashtable<>();
+    }
+
+    /**
+     * Set the properties once they are loaded. Properties are read-only afterwards.
+     *
+     * @param properties Properties.
+     * @throws IllegalStateException Thrown if the properties are already set.
+     */
+    void setProperties(PropertyStore properties) throws IllegalStateException {
+        if (this.properties != PropertyStore.EMPTY) {
+            throw new IllegalStateException("Properties are already set");
+        }
+        this.properties = properties;
     }
 
     public static class Builder {
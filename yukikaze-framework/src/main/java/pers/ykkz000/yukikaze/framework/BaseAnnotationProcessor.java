@@ -18,12 +18,15 @@
 
 package pers.ykkz000.yukikaze.framework;
 
+import org.apache.commons.math3.util.Pair;
 import pers.ykkz000.yukikaze.framework.annotation.BindCommand;
 import pers.ykkz000.yukikaze.framework.annotation.Controller;
 import pers.ykkz000.yukikaze.framework.api.AnnotationProcessor;
 
 import jakarta.annotation.Nonnull;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Base annotation processor.
@@ -50,13 +53,15 @@ public class BaseAnnotationProcessor implements AnnotationProcessor {
         Controller controller = clazz.getAnnotation(Controller.class);
         String prefix = controller.prefix();
         Method[] methods = clazz.getDeclaredMethods();
+        List<Pair<String, Method>> routes = new ArrayList<>();
         for (Method method : methods) {
             if (method.isAnnotationPresent(BindCommand.class)) {
                 method.setAccessible(true);
                 BindCommand bindCommand = method.getAnnotation(BindCommand.class);
                 String command = prefix + bindCommand.value();
-                context.getCommandRouter().addRoute(command, bean, method);
+                routes.add(new Pair<>(command, method));
             }
         }
+        context.getCommandRouter().addRoutes(bean, routes);
     }
 }
@@ -18,19 +18,35 @@
 
 package pers.ykkz000.yukikaze.framework;
 
-import pers.ykkz000.yukikaze.framework.annotation.AutoWire;
-import pers.ykkz000.yukikaze.framework.annotation.BeanConstructor;
+import pers.ykkz000.yukikaze.framework.annotation.BeanScope;
+import pers.ykkz000.yukikaze.framework.api.AnnotationProcessor;
+import pers.ykkz000.yukikaze.framework.profile.StartupProfiler;
 
-import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Parameter;
-import java.util.Arrays;
-import java.util.Hashtable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
- * Bean factory
+ * Bean factory.
+ * Each singleton bean is created once by the first thread asking for it; other threads wait for that creation, and
+ * beans already created are returned without locking. Circular dependencies are reported instead of recursing forever
+ * or waiting forever for another thread. Prototype beans are created on every request, thread-local beans once per
+ * thread, and pooled beans are handed out as a {@link BeanPool}.
  *
  * @author ykkz000
  */
@@ -38,50 +54,361 @@ public class BeanFactory {
     private final ApplicationContext context;
     private final Map<String, String> beanClassNames;
     private final Map<String, ClassLoader> beanClassLoaders;
-    private final Map<String, Object> beanInstances;
+    private final Map<String, BeanPlan> beanPlans;
+    private final Map<String, CompletableFuture<Object>> beanInstances;
+    private final Map<String, ThreadLocal<Object>> threadLocalInstances;
+    private final Map<String, Thread> beanCreators;
+    private final Map<Thread, String> awaitedBeans;
+    private final ThreadLocal<Deque<String>> creationPath;
 
     public BeanFactory(ApplicationContext context) {
         this.context = context;
-        beanClassNames = new Hashtable<>();
-        beanClassLoaders = new Hashtable<>();
-        beanInstances = new Hashtable<>();
+        beanClassNames = new ConcurrentHashMap<>();
+        beanClassLoaders = new ConcurrentHashMap<>();
+        beanPlans = new ConcurrentHashMap<>();
+        beanInstances = new ConcurrentHashMap<>();
+        threadLocalInstances = new ConcurrentHashMap<>();
+        beanCreators = new ConcurrentHashMap<>();
+        awaitedBeans = new ConcurrentHashMap<>();
+        creationPath = ThreadLocal.withInitial(ArrayDeque::new);
     }
 
     public void defineBean(String name, String className, ClassLoader classLoader) {
         beanClassNames.put(name, className);
         beanClassLoaders.put(name, classLoader);
+        beanPlans.remove(name);
     }
 
+    /**
+     * Get a bean by name. A {@link BeanScope#POOLED} bean is returned as its {@link BeanPool}.
+     *
+     * @param name name of the bean
+     * @return the bean
+     * @throws IllegalStateException if the bean is not defined or the beans depend on each other circularly
+     */
     public Object getBean(String name) throws IllegalStateException, ClassNotFoundException, InvocationTargetException, InstantiationException, IllegalAccessException {
-        if (!beanClassNames.containsKey(name)) {
-            throw new IllegalStateException("Bean not found: " + name);
-        }
-        if (!beanInstances.containsKey(name)) {
-            beanInstances.put(name, createBeanInstance(beanClassNames.get(name), beanClassLoaders.get(name)));
-        }
-        return beanInstances.get(name);
-    }
-    
-    protected Object createBeanInstance(String className, ClassLoader classLoader) throws ClassNotFoundException, InvocationTargetException, InstantiationException, IllegalAccessException {
-        Class<?> beanClass = classLoader.loadClass(className);
-        List<Constructor<?>> beanConstructors = Arrays.stream(beanClass.getDeclaredConstructors()).filter(constructor -> constructor.isAnnotationPresent(BeanConstructor.class)).toList();
-        if (beanConstructors.size() > 1) {
-            throw new IllegalStateException("Multiple or no bean constructors found for class: " + className);
-        }
-        Constructor<?> beanConstructor = beanConstructors.get(0);
-        beanConstructor.setAccessible(true);
-        Parameter[] parameters = beanConstructor.getParameters();
-        Object[] args = new Object[parameters.length];
-        for (int i = 0; i < parameters.length; i++) {
-            if (!parameters[i].isAnnotationPresent(AutoWire.class)) {
-                throw new IllegalStateException("No @AutoWire annotation found for parameter: " + parameters[i].getName());
+        CompletableFuture<Object> instance = beanInstances.get(name);
+        if (instance != null && instance.isDone() && !instance.isCompletedExceptionally()) {
+            return instance.join();
+        }
+        BeanPlan plan = getBeanPlan(name);
+        switch (plan.getScope()) {
+            case PROTOTYPE:
+                return createTracked(name, plan);
+            case THREAD_LOCAL:
+                ThreadLocal<Object> local = threadLocalInstances.computeIfAbsent(name, key -> new ThreadLocal<>());
+                Object bean = local.get();
+                if (bean == null) {
+                    bean = createTracked(name, plan);
+                    local.set(bean);
+                }
+                return bean;
+            default:
+                break;
+        }
+        if (instance == null) {
+            CompletableFuture<Object> creation = new CompletableFuture<>();
+            instance = beanInstances.putIfAbsent(name, creation);
+            if (instance == null) {
+                return create(name, plan, creation);
+            }
+        }
+        return await(name, instance);
+    }
+
+    private Object create(String name, BeanPlan plan, CompletableFuture<Object> creation) throws ClassNotFoundException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        beanCreators.put(name, Thread.currentThread());
+        try {
+            Object bean = plan.getScope() == BeanScope.POOLED
+                    ? new BeanPool<>(name, plan.getPoolSize(), () -> createTracked(name, plan))
+                    : createTracked(name, plan);
+            creation.complete(bean);
+            return bean;
+        } catch (Throwable e) {
+            beanInstances.remove(name, creation);
+            creation.completeExceptionally(e);
+            throw e;
+        } finally {
+            beanCreators.remove(name);
+        }
+    }
+
+    private Object createTracked(String name, BeanPlan plan) throws ClassNotFoundException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        Deque<String> path = creationPath.get();
+        if (path.contains(name)) {
+            throw circularDependency(path, name);
+        }
+        path.addLast(name);
+        try {
+            return createBeanInstance(plan);
+        } finally {
+            path.removeLast();
+        }
+    }
+
+    private Object await(String name, CompletableFuture<Object> creation) throws ClassNotFoundException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        Thread current = Thread.currentThread();
+        if (!creation.isDone()) {
+            Deque<String> path = creationPath.get();
+            if (path.contains(name)) {
+                throw circularDependency(path, name);
+            }
+            awaitedBeans.put(current, name);
+        }
+        try {
+            if (!creation.isDone()) {
+                checkDeadlock(name, creation, current);
+            }
+            return creation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for bean: " + name, e);
+        } catch (ExecutionException e) {
+            throw rethrow("Failed to create bean: " + name, e.getCause());
+        } finally {
+            awaitedBeans.remove(current);
+        }
+    }
+
+    /**
+     * Create the given singleton beans and everything they depend on. Beans whose dependencies are ready are created in
+     * parallel on the executor, so the time taken follows the longest dependency chain instead of the sum of all
+     * constructors. Beans of other scopes are only checked, as their instances are created when requested.
+     *
+     * @param names    names of the beans to create
+     * @param executor executor to create beans on
+     * @throws IllegalStateException if a bean is not defined or the beans depend on each other circularly
+     */
+    public void instantiateBeans(Collection<String> names, Executor executor) throws IllegalStateException, ClassNotFoundException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        instantiateBeans(getDependencyGraph(names), executor);
+    }
+
+    /**
+     * Create the beans of a dependency graph as {@link #instantiateBeans(Collection, Executor)} does.
+     *
+     * @param dependencies dependency graph from {@link #getDependencyGraph(Collection)}
+     * @param executor     executor to create beans on
+     * @throws IllegalStateException if a bean is not defined or the beans depend on each other circularly
+     */
+    public void instantiateBeans(Map<String, List<String>> dependencies, Executor executor) throws IllegalStateException, ClassNotFoundException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        Map<String, CompletableFuture<Void>> creations = new HashMap<>();
+        for (String name : sortDependencies(dependencies)) {
+            CompletableFuture<?>[] ready = dependencies.get(name).stream().map(creations::get).toArray(CompletableFuture<?>[]::new);
+            creations.put(name, CompletableFuture.allOf(ready).thenRunAsync(() -> {
+                try {
+                    if (getBeanPlan(name).getScope() == BeanScope.SINGLETON) {
+                        getBean(name);
+                    }
+                } catch (ReflectiveOperationException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(creations.values().toArray(CompletableFuture<?>[]::new)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while creating beans", e);
+        } catch (ExecutionException e) {
+            throw rethrow("Failed to create beans: " + dependencies.keySet(), e.getCause());
+        }
+    }
+
+    /**
+     * Get the dependency graph of the given beans and everything they depend on.
+     *
+     * @param names names of the beans
+     * @return names of the beans mapped to the names of the beans they require, see {@link #getBeanDependencies}
+     * @throws IllegalStateException if a bean is not defined or has no valid bean constructor
+     */
+    public Map<String, List<String>> getDependencyGraph(Collection<String> names) throws IllegalStateException, ClassNotFoundException, IllegalAccessException {
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        Deque<String> pending = new ArrayDeque<>(names);
+        while (!pending.isEmpty()) {
+            String name = pending.poll();
+            if (!dependencies.containsKey(name)) {
+                List<String> beanDependencies = getBeanDependencies(name);
+                dependencies.put(name, beanDependencies);
+                pending.addAll(beanDependencies);
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * Build the plans of all defined beans, including those not loaded automatically, so that a bean without a valid
+     * bean constructor or with a missing or invalid injected property fails now instead of when it is first requested.
+     *
+     * @throws IllegalStateException if a bean has no valid bean constructor or a property injected into it is missing
+     *                               or invalid
+     */
+    public void validateBeans() throws IllegalStateException, ClassNotFoundException, IllegalAccessException {
+        for (String name : beanClassNames.keySet()) {
+            getBeanPlan(name);
+        }
+    }
+
+    /**
+     * Get the class names of all defined beans.
+     *
+     * @return names of the beans mapped to their class names
+     */
+    public Map<String, String> getBeanDefinitions() {
+        return Map.copyOf(beanClassNames);
+    }
+
+    /**
+     * Get the names of the beans autowired into the bean constructor of a bean, leaving out those injected lazily
+     * or as {@link Supplier} since they are only requested later.
+     *
+     * @param name name of the bean
+     * @return names of the beans that must be created before the bean
+     * @throws IllegalStateException if the bean is not defined, has no valid bean constructor or a property injected
+     *                               into it is missing or invalid
+     */
+    public List<String> getBeanDependencies(String name) throws IllegalStateException, ClassNotFoundException, IllegalAccessException {
+        return getBeanPlan(name).getRequiredDependencies();
+    }
+
+    private BeanPlan getBeanPlan(String name) throws IllegalStateException, ClassNotFoundException, IllegalAccessException {
+        BeanPlan plan = beanPlans.get(name);
+        if (plan == null) {
+            String className = beanClassNames.get(name);
+            if (className == null) {
+                throw new IllegalStateException("Bean not found: " + name);
+            }
+            plan = BeanPlan.of(beanClassLoaders.get(name).loadClass(className), context.getProperties());
+            BeanPlan existing = beanPlans.putIfAbsent(name, plan);
+            if (existing != null) {
+                plan = existing;
             }
-            String parameterBeanName = parameters[i].getAnnotation(AutoWire.class).value();
-            args[i] = getBean(parameterBeanName);
         }
-        context.getAnnotationProcessors().forEach(annotationProcessor -> annotationProcessor.processBeanAnnotationsBeforeCreateInstance(beanClass));
-        Object bean = beanConstructor.newInstance(args);
-        context.getAnnotationProcessors().forEach(annotationProcessor -> annotationProcessor.processBeanAnnotationsAfterCreateInstance(bean));
-        return bean;
+        return plan;
+    }
+
+    private static List<String> sortDependencies(Map<String, List<String>> dependencies) {
+        List<String> sorted = new ArrayList<>(dependencies.size());
+        Set<String> visited = new HashSet<>();
+        Deque<String> path = new ArrayDeque<>();
+        for (String name : dependencies.keySet()) {
+            visit(name, dependencies, visited, path, sorted);
+        }
+        return sorted;
+    }
+
+    private static void visit(String name, Map<String, List<String>> dependencies, Set<String> visited, Deque<String> path, List<String> sorted) {
+        if (visited.contains(name)) {
+            return;
+        }
+        if (path.contains(name)) {
+            throw circularDependency(path, name);
+        }
+        path.addLast(name);
+        for (String dependency : dependencies.get(name)) {
+            visit(dependency, dependencies, visited, path, sorted);
+        }
+        path.removeLast();
+        visited.add(name);
+        sorted.add(name);
+    }
+
+    private static IllegalStateException circularDependency(Deque<String> path, String name) {
+        List<String> cycle = new ArrayList<>(path);
+        cycle = cycle.subList(cycle.indexOf(name), cycle.size());
+        return new IllegalStateException("Circular dependency: " + String.join(" -> ", cycle) + " -> " + name);
+    }
+
+    private static IllegalStateException rethrow(String message, Throwable cause) throws ClassNotFoundException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        if (cause instanceof ClassNotFoundException exception) {
+            throw exception;
+        } else if (cause instanceof InvocationTargetException exception) {
+            throw exception;
+        } else if (cause instanceof InstantiationException exception) {
+            throw exception;
+        } else if (cause instanceof IllegalAccessException exception) {
+            throw exception;
+        } else if (cause instanceof RuntimeException exception) {
+            throw exception;
+        } else if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(message, cause);
+    }
+
+    /**
+     * Follow the beans awaited by the threads creating the beans this thread waits for. Reaching this thread again
+     * means the beans depend on each other and would wait forever.
+     */
+    private void checkDeadlock(String name, CompletableFuture<Object> creation, Thread current) {
+        Set<String> chain = new LinkedHashSet<>();
+        chain.add(name);
+        Thread creator = beanCreators.get(name);
+        while (creator != null) {
+            if (creator == current) {
+                if (creation.isDone()) {
+                    return;
+                }
+                throw new IllegalStateException("Circular dependency between beans created by different threads: " + String.join(" -> ", chain) + " -> " + name);
+            }
+            String awaited = awaitedBeans.get(creator);
+            if (awaited == null || !chain.add(awaited)) {
+                return;
+            }
+            creator = beanCreators.get(awaited);
+        }
+    }
+
+    protected Object createBeanInstance(BeanPlan plan) throws ClassNotFoundException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        List<BeanPlan.Injection> injections = plan.getInjections();
+        Object[] args = new Object[injections.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = resolveDependency(injections.get(i));
+        }
+        StartupProfiler profiler = context.getStartupProfiler();
+        StartupProfiler.Span beanSpan = profiler.start("bean", plan.getBeanClass().getName());
+        try (beanSpan) {
+            for (AnnotationProcessor annotationProcessor : context.getAnnotationProcessors()) {
+                StartupProfiler.Span processorSpan = profiler.start("processor.before", annotationProcessor.getClass().getName());
+                try (processorSpan) {
+                    annotationProcessor.processBeanAnnotationsBeforeCreateInstance(plan.getBeanClass());
+                }
+            }
+            Object bean = plan.newInstance(args);
+            for (AnnotationProcessor annotationProcessor : context.getAnnotationProcessors()) {
+                StartupProfiler.Span processorSpan = profiler.start("processor.after", annotationProcessor.getClass().getName());
+                try (processorSpan) {
+                    annotationProcessor.processBeanAnnotationsAfterCreateInstance(bean);
+                }
+            }
+            return bean;
+        }
+    }
+
+    private Object resolveDependency(BeanPlan.Injection injection) throws ClassNotFoundException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        if (injection.kind() == BeanPlan.Injection.Kind.PROPERTY) {
+            return injection.value();
+        }
+        String name = injection.name();
+        Class<?> parameterType = injection.type();
+        if (injection.lazy()) {
+            return LazyProxyFactory.create(parameterType, beanSupplier(name));
+        }
+        if (parameterType == Supplier.class) {
+            return beanSupplier(name);
+        }
+        if (getBeanPlan(name).getScope() == BeanScope.POOLED && !parameterType.isAssignableFrom(BeanPool.class)) {
+            throw new IllegalStateException("Pooled bean must be injected as BeanPool: " + name);
+        }
+        return getBean(name);
+    }
+
+    private Supplier<Object> beanSupplier(String name) {
+        return () -> {
+            try {
+                return getBean(name);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to create bean: " + name, e);
+            }
+        };
     }
 }
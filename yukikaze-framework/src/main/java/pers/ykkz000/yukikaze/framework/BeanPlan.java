@@ -0,0 +1,165 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework;
+
+import lombok.Getter;
+import pers.ykkz000.yukikaze.framework.annotation.AutoWire;
+import pers.ykkz000.yukikaze.framework.annotation.Bean;
+import pers.ykkz000.yukikaze.framework.annotation.BeanConstructor;
+import pers.ykkz000.yukikaze.framework.annotation.BeanScope;
+import pers.ykkz000.yukikaze.framework.annotation.ConfigurationProperties;
+import pers.ykkz000.yukikaze.framework.annotation.Property;
+import pers.ykkz000.yukikaze.framework.property.PropertyBinder;
+import pers.ykkz000.yukikaze.framework.property.PropertyStore;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * How to create a bean, resolved once per bean definition: the bean class and scope, the beans and properties injected
+ * into its bean constructor and a method handle calling that constructor. Properties are converted when the plan is
+ * resolved, so creating a bean does not parse them again.
+ *
+ * @author ykkz000
+ */
+public class BeanPlan {
+    @Getter
+    private final Class<?> beanClass;
+    @Getter
+    private final BeanScope scope;
+    @Getter
+    private final int poolSize;
+    @Getter
+    private final List<Injection> injections;
+    /**
+     * Dependencies that must be created before the bean, that is all except those injected as {@link Supplier} or
+     * lazily.
+     */
+    @Getter
+    private final List<String> requiredDependencies;
+    private final MethodHandle factory;
+
+    private BeanPlan(Class<?> beanClass, List<Injection> injections, MethodHandle factory) {
+        this.beanClass = beanClass;
+        Bean bean = beanClass.getAnnotation(Bean.class);
+        this.scope = bean == null ? BeanScope.SINGLETON : bean.scope();
+        this.poolSize = bean == null ? 0 : bean.poolSize();
+        this.injections = injections;
+        this.requiredDependencies = injections.stream().filter(injection -> injection.kind() == Injection.Kind.BEAN && !injection.isDeferred()).map(Injection::name).toList();
+        this.factory = factory;
+    }
+
+    static BeanPlan of(Class<?> beanClass, PropertyStore properties) throws IllegalStateException, IllegalAccessException {
+        List<Constructor<?>> beanConstructors = Arrays.stream(beanClass.getDeclaredConstructors()).filter(constructor -> constructor.isAnnotationPresent(BeanConstructor.class)).toList();
+        if (beanConstructors.size() != 1) {
+            throw new IllegalStateException("Multiple or no bean constructors found for class: " + beanClass.getName());
+        }
+        Constructor<?> beanConstructor = beanConstructors.get(0);
+        Parameter[] parameters = beanConstructor.getParameters();
+        List<Injection> injections = new ArrayList<>(parameters.length);
+        for (Parameter parameter : parameters) {
+            Property property = parameter.getAnnotation(Property.class);
+            if (property != null) {
+                String defaultValue = Property.REQUIRED.equals(property.defaultValue()) ? null : property.defaultValue();
+                Object value = PropertyBinder.bindProperty(properties, property.value(), defaultValue, parameter.getType(), parameter.getParameterizedType());
+                injections.add(new Injection(Injection.Kind.PROPERTY, property.value(), parameter.getType(), false, value));
+                continue;
+            }
+            ConfigurationProperties configurationProperties = parameter.getAnnotation(ConfigurationProperties.class);
+            if (configurationProperties != null) {
+                Object value = PropertyBinder.bindRecord(properties, configurationProperties.value(), parameter.getType());
+                injections.add(new Injection(Injection.Kind.PROPERTY, configurationProperties.value(), parameter.getType(), false, value));
+                continue;
+            }
+            AutoWire autoWire = parameter.getAnnotation(AutoWire.class);
+            if (autoWire == null) {
+                throw new IllegalStateException("No @AutoWire, @Property or @ConfigurationProperties annotation found for parameter: " + parameter.getName());
+            }
+            if (autoWire.lazy() && !parameter.getType().isInterface()) {
+                throw new IllegalStateException("Lazy @AutoWire parameter must be an interface: " + parameter.getName());
+            }
+            injections.add(new Injection(Injection.Kind.BEAN, autoWire.value(), parameter.getType(), autoWire.lazy(), null));
+        }
+        MethodHandle factory = unreflect(beanClass, beanConstructor)
+                .asType(MethodType.genericMethodType(parameters.length))
+                .asSpreader(Object[].class, parameters.length);
+        return new BeanPlan(beanClass, List.copyOf(injections), factory);
+    }
+    private static MethodHandle unreflect(Class<?> beanClass, Constructor<?> beanConstructor) throws IllegalAccessException {
+        try {
+            return MethodHandles.privateLookupIn(beanClass, MethodHandles.lookup()).unreflectConstructor(beanConstructor);
+        } catch (IllegalAccessException e) {
+            beanConstructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(beanConstructor);
+        }
+    }
+
+    /**
+     * Call the bean constructor.
+     *
+     * @param args beans to pass to the constructor, in parameter order
+     * @return the new bean
+     * @throws InvocationTargetException if the constructor throws
+     */
+    Object newInstance(Object[] args) throws InvocationTargetException {
+        try {
+            return (Object) factory.invokeExact(args);
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * A bean or property injected into a bean constructor parameter.
+     *
+     * @param kind  whether a bean or a property is injected
+     * @param name  name of the injected bean, or key or prefix of the injected properties
+     * @param type  type of the parameter
+     * @param lazy  whether a proxy creating the bean on first use is injected
+     * @param value converted value of the properties, null for a bean
+     */
+    public record Injection(Kind kind, String name, Class<?> type, boolean lazy, Object value) {
+        /**
+         * Check whether the bean is only requested after the constructor was called.
+         *
+         * @return true for lazy and {@link Supplier} injections
+         */
+        public boolean isDeferred() {
+            return lazy || type == Supplier.class;
+        }
+
+        public enum Kind {
+            /**
+             * A bean autowired by name.
+             */
+            BEAN,
+            /**
+             * A property or a record bound to the properties under a prefix.
+             */
+            PROPERTY
+        }
+    }
+}
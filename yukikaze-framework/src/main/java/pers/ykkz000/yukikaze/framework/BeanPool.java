@@ -0,0 +1,115 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework;
+
+import lombok.Getter;
+import pers.ykkz000.yukikaze.framework.api.PooledBean;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Bounded pool of the instances of a {@link pers.ykkz000.yukikaze.framework.annotation.BeanScope#POOLED} bean.
+ * Instances are created on demand up to the size of the pool; borrowers wait while all of them are lent out.
+ * Beans implementing {@link PooledBean} are notified when they are borrowed and returned.
+ *
+ * @param <T> type of the bean
+ * @author ykkz000
+ */
+public class BeanPool<T> {
+    @Getter
+    private final String name;
+    @Getter
+    private final int size;
+    private final Callable<T> factory;
+    private final Semaphore permits;
+    private final Queue<T> idle;
+
+    public BeanPool(String name, int size, Callable<T> factory) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size of bean " + name + " must be positive: " + size);
+        }
+        this.name = name;
+        this.size = size;
+        this.factory = factory;
+        permits = new Semaphore(size);
+        idle = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Borrow an instance, waiting while all instances are lent out. It must be given back with {@link #release}.
+     *
+     * @return the instance
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public T borrow() throws InterruptedException {
+        permits.acquire();
+        try {
+            T bean = idle.poll();
+            if (bean == null) {
+                bean = factory.call();
+            }
+            if (bean instanceof PooledBean pooledBean) {
+                pooledBean.onBorrow();
+            }
+            return bean;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        } catch (Exception e) {
+            permits.release();
+            throw new IllegalStateException("Failed to create pooled bean: " + name, e);
+        }
+    }
+
+    /**
+     * Return a borrowed instance to the pool. An instance whose {@link PooledBean#onReturn} throws is dropped.
+     *
+     * @param bean the instance
+     */
+    public void release(T bean) {
+        try {
+            if (bean instanceof PooledBean pooledBean) {
+                pooledBean.onReturn();
+            }
+            idle.offer(bean);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Borrow an instance for the duration of an action.
+     *
+     * @param action action using the instance
+     * @param <R>    type of the result
+     * @return result of the action
+     * @throws InterruptedException if interrupted while waiting for an instance
+     */
+    public <R> R apply(Function<? super T, ? extends R> action) throws InterruptedException {
+        T bean = borrow();
+        try {
+            return action.apply(bean);
+        } finally {
+            release(bean);
+        }
+    }
+}
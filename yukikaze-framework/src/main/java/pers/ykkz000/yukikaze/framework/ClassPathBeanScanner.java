@@ -18,32 +18,60 @@
 
 package pers.ykkz000.yukikaze.framework;
 
+import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.AnnotationNode;
-import org.objectweb.asm.tree.ClassNode;
 import pers.ykkz000.yukikaze.framework.annotation.Bean;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 /**
  * Scanner for classpath to scan beans.
+ * Only class-level annotations are parsed, and classes whose constant pool does not mention {@link Bean} are skipped.
  *
  * @author ykkz000
  */
 public class ClassPathBeanScanner {
+    private static final String BEAN_DESCRIPTOR = Type.getDescriptor(Bean.class);
+    private static final byte[] BEAN_DESCRIPTOR_BYTES = BEAN_DESCRIPTOR.getBytes(StandardCharsets.UTF_8);
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int PARSING_OPTIONS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a scanner that reads classes on the calling thread.
+     */
+    public ClassPathBeanScanner() {
+        this(null);
+    }
+
+    /**
+     * Create a scanner that reads classes in parallel.
+     *
+     * @param pool Pool to read classes on, or null to read them on the calling thread.
+     */
+    public ClassPathBeanScanner(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
     public List<String> scanBeans(String basePackage, Class<?> clazz, BeanFactory beanFactory) throws IOException {
         List<String> autoLoadBeanNames = new ArrayList<>();
         String basePackagePath = basePackage.replaceAll("\\.", "/");
@@ -57,70 +85,156 @@ public class ClassPathBeanScanner {
             } else if ("jar".equals(protocol)) {
                 JarURLConnection jarUrlConnection = (JarURLConnection) url.openConnection();
                 JarFile jarFile = jarUrlConnection.getJarFile();
+                List<ClassSource> sources = new ArrayList<>();
                 Enumeration<JarEntry> entries = jarFile.entries();
-                while  (entries.hasMoreElements()) {
+                while (entries.hasMoreElements()) {
                     JarEntry entry = entries.nextElement();
                     String entryName = entry.getName();
                     if (entryName.endsWith(".class") && entryName.startsWith(basePackagePath)) {
-                        ClassReader classReader = new ClassReader(jarFile.getInputStream(entry));
-                        ClassNode classNode = new ClassNode();
-                        classReader.accept(classNode, 0);
-                        processClass(classNode, clazz, beanFactory, autoLoadBeanNames);
+                        sources.add(() -> {
+                            try (InputStream inputStream = jarFile.getInputStream(entry)) {
+                                return inputStream.readAllBytes();
+                            }
+                        });
                     }
                 }
+                defineBeans(readBeans(sources), clazz, beanFactory, autoLoadBeanNames);
             }
         }
         return autoLoadBeanNames;
     }
 
     public void scanBeansInDirectory(File parent, Class<?> clazz, BeanFactory beanFactory, List<String> autoLoadBeanNames) throws IOException {
+        List<ClassSource> sources = new ArrayList<>();
+        collectClassFiles(parent, sources);
+        defineBeans(readBeans(sources), clazz, beanFactory, autoLoadBeanNames);
+    }
+
+    private static void collectClassFiles(File parent, List<ClassSource> sources) {
         File[] files = parent.listFiles();
         if (files == null) {
             return;
         }
         for (File file : files) {
             if (file.isDirectory()) {
-                scanBeansInDirectory(file, clazz, beanFactory, autoLoadBeanNames);
-            } else if (file.canRead()) {
-                String filePath = file.getPath();
-                if (filePath.endsWith(".class")) {
-                    ClassReader classReader = new ClassReader(new FileInputStream(file));
-                    ClassNode classNode = new ClassNode();
-                    classReader.accept(classNode, 0);
-                    processClass(classNode, clazz, beanFactory, autoLoadBeanNames);
-                }
+                collectClassFiles(file, sources);
+            } else if (file.canRead() && file.getPath().endsWith(".class")) {
+                sources.add(() -> Files.readAllBytes(file.toPath()));
             }
         }
     }
 
-    private void processClass(ClassNode classNode, Class<?> clazz, BeanFactory beanFactory, List<String> autoLoadBeanNames) {
-        String className = Type.getObjectType(classNode.name).getClassName();
-        if (classNode.visibleAnnotations == null) {
-            return;
+    private List<BeanCandidate> readBeans(List<ClassSource> sources) throws IOException {
+        if (pool == null || sources.size() < 2) {
+            List<BeanCandidate> candidates = new ArrayList<>();
+            for (ClassSource source : sources) {
+                BeanCandidate candidate = readBean(source.read());
+                if (candidate != null) {
+                    candidates.add(candidate);
+                }
+            }
+            return candidates;
         }
-        Optional<AnnotationNode> beanNodeOptional = classNode.visibleAnnotations.stream()
-                .filter(annotationNode -> isBeanAnnotation(annotationNode.desc))
-                .findAny();
-        if (beanNodeOptional.isEmpty()) {
-            return;
+        try {
+            return pool.submit(() -> sources.parallelStream()
+                    .map(source -> {
+                        try {
+                            return readBean(source.read());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .filter(Objects::nonNull)
+                    .toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scanning beans", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            }
+            throw new IOException(e.getCause());
         }
-        AnnotationNode beanNode = beanNodeOptional.get();
-        String name = null;
-        boolean autoLoad = false;
-        for (int i = 0; i < beanNode.values.size(); i += 2) {
-            if ("name".equals(beanNode.values.get(i))) {
-                name = (String) beanNode.values.get(i + 1);
-            } else if ("autoLoad".equals(beanNode.values.get(i))) {
-                autoLoad = (boolean) beanNode.values.get(i + 1);
+    }
+
+    private static void defineBeans(List<BeanCandidate> candidates, Class<?> clazz, BeanFactory beanFactory, List<String> autoLoadBeanNames) {
+        for (BeanCandidate candidate : candidates) {
+            beanFactory.defineBean(candidate.name(), candidate.className(), clazz.getClassLoader());
+            if (candidate.autoLoad()) {
+                autoLoadBeanNames.add(candidate.name());
             }
         }
-        beanFactory.defineBean(name, className, clazz.getClassLoader());
-        if (autoLoad) {
-            autoLoadBeanNames.add(name);
+    }
+
+    private static BeanCandidate readBean(byte[] classFile) {
+        ClassReader classReader = new ClassReader(classFile);
+        if (!mentionsBeanAnnotation(classReader)) {
+            return null;
+        }
+        BeanClassVisitor visitor = new BeanClassVisitor();
+        classReader.accept(visitor, PARSING_OPTIONS);
+        return visitor.bean ? new BeanCandidate(visitor.name, visitor.className, visitor.autoLoad) : null;
+    }
+
+    private static boolean mentionsBeanAnnotation(ClassReader classReader) {
+        for (int i = 1; i < classReader.getItemCount(); i++) {
+            int offset = classReader.getItem(i);
+            if (offset == 0 || classReader.readByte(offset - 1) != CONSTANT_UTF8) {
+                continue;
+            }
+            if (classReader.readUnsignedShort(offset) != BEAN_DESCRIPTOR_BYTES.length) {
+                continue;
+            }
+            int start = offset + 2;
+            int j = 0;
+            while (j < BEAN_DESCRIPTOR_BYTES.length && (byte) classReader.readByte(start + j) == BEAN_DESCRIPTOR_BYTES[j]) {
+                j++;
+            }
+            if (j == BEAN_DESCRIPTOR_BYTES.length) {
+                return true;
+            }
         }
+        return false;
+    }
+
+    private interface ClassSource {
+        byte[] read() throws IOException;
+    }
+
+    private record BeanCandidate(String name, String className, boolean autoLoad) {
     }
 
-    private static boolean isBeanAnnotation(String desc) {
-        return desc.equals(Type.getType(Bean.class).getDescriptor());
+    private static class BeanClassVisitor extends ClassVisitor {
+        private String className;
+        private boolean bean;
+        private String name;
+        private boolean autoLoad;
+
+        private BeanClassVisitor() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            className = Type.getObjectType(name).getClassName();
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            if (!visible || !BEAN_DESCRIPTOR.equals(descriptor)) {
+                return null;
+            }
+            bean = true;
+            return new AnnotationVisitor(Opcodes.ASM9) {
+                @Override
+                public void visit(String attributeName, Object value) {
+                    if ("name".equals(attributeName)) {
+                        name = (String) value;
+                    } else if ("autoLoad".equals(attributeName)) {
+                        autoLoad = (boolean) value;
+                    }
+                }
+            };
+        }
     }
 }
@@ -0,0 +1,54 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework;
+
+import java.util.function.Supplier;
+
+/**
+ * Base class of the proxies injected for lazy {@code @AutoWire} parameters. The target bean is requested on the
+ * first call to {@link #getTarget()} and kept afterwards.
+ *
+ * @author ykkz000
+ */
+public abstract class LazyBeanProxy {
+    private final Supplier<Object> supplier;
+    private volatile Object target;
+
+    protected LazyBeanProxy(Supplier<Object> supplier) {
+        this.supplier = supplier;
+    }
+
+    /**
+     * Get the target bean, creating it on the first call.
+     *
+     * @return the target bean
+     */
+    protected final Object getTarget() {
+        Object result = target;
+        if (result == null) {
+            synchronized (this) {
+                result = target;
+                if (result == null) {
+                    result = supplier.get();
+                    target = result;
+                }
+            }
+        }
+        return result;
+    }
+}
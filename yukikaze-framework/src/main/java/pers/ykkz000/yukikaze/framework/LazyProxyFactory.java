@@ -0,0 +1,165 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Factory of the proxies injected for lazy {@code @AutoWire} parameters. For each interface a class extending
+ * {@link LazyBeanProxy} is generated with ASM and defined next to the interface; every interface method forwards to
+ * the target bean, and so do {@code equals}, {@code hashCode} and {@code toString}, as with a {@link Proxy}. Interfaces
+ * that cannot be extended that way get a {@link Proxy} instead.
+ *
+ * @author ykkz000
+ */
+final class LazyProxyFactory {
+    private static final String PROXY_SUFFIX = "$$LazyProxy";
+    private static final String BASE_NAME = Type.getInternalName(LazyBeanProxy.class);
+    private static final String CONSTRUCTOR_DESCRIPTOR = Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Supplier.class));
+    private static final Map<Class<?>, Function<Supplier<Object>, Object>> FACTORIES = new ConcurrentHashMap<>();
+    private static final String[][] OBJECT_METHODS = {
+            {"equals", "(Ljava/lang/Object;)Z"},
+            {"hashCode", "()I"},
+            {"toString", "()Ljava/lang/String;"}
+    };
+
+    private LazyProxyFactory() {
+    }
+
+    /**
+     * Create a proxy of an interface that requests its target on the first method call.
+     *
+     * @param iface    the interface
+     * @param supplier supplier of the target
+     * @return the proxy
+     */
+    static Object create(Class<?> iface, Supplier<Object> supplier) {
+        return FACTORIES.computeIfAbsent(iface, LazyProxyFactory::newFactory).apply(supplier);
+    }
+
+    private static Function<Supplier<Object>, Object> newFactory(Class<?> iface) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(iface, MethodHandles.lookup());
+            Class<?> proxyClass = lookup.defineClass(generate(iface));
+            MethodHandle constructor = lookup.findConstructor(proxyClass, MethodType.methodType(void.class, Supplier.class))
+                    .asType(MethodType.methodType(Object.class, Supplier.class));
+            return supplier -> {
+                try {
+                    return (Object) constructor.invokeExact(supplier);
+                } catch (Throwable e) {
+                    throw new IllegalStateException("Failed to create lazy proxy of " + iface.getName(), e);
+                }
+            };
+        } catch (IllegalAccessException | NoSuchMethodException | LinkageError | SecurityException e) {
+            LoggerFactory.getLogger(LazyProxyFactory.class).debug("Failed to generate lazy proxy of {}, fall back to java.lang.reflect.Proxy", iface.getName(), e);
+            return supplier -> newReflectiveProxy(iface, supplier);
+        }
+    }
+
+    private static byte[] generate(Class<?> iface) {
+        String proxyName = Type.getInternalName(iface) + PROXY_SUFFIX;
+        String ifaceName = Type.getInternalName(iface);
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC,
+                proxyName, null, BASE_NAME, new String[]{ifaceName});
+        MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", CONSTRUCTOR_DESCRIPTOR, null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitVarInsn(Opcodes.ALOAD, 1);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, BASE_NAME, "<init>", CONSTRUCTOR_DESCRIPTOR, false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+        Set<String> generated = new HashSet<>();
+        for (Method method : iface.getMethods()) {
+            String descriptor = Type.getMethodDescriptor(method);
+            if (Modifier.isStatic(method.getModifiers()) || !generated.add(method.getName() + descriptor)) {
+                continue;
+            }
+            String[] exceptions = Arrays.stream(method.getExceptionTypes()).map(Type::getInternalName).toArray(String[]::new);
+            MethodVisitor visitor = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, method.getName(), descriptor, null, exceptions);
+            visitor.visitCode();
+            visitor.visitVarInsn(Opcodes.ALOAD, 0);
+            visitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, proxyName, "getTarget", "()Ljava/lang/Object;", false);
+            visitor.visitTypeInsn(Opcodes.CHECKCAST, ifaceName);
+            int slot = 1;
+            for (Type argumentType : Type.getArgumentTypes(descriptor)) {
+                visitor.visitVarInsn(argumentType.getOpcode(Opcodes.ILOAD), slot);
+                slot += argumentType.getSize();
+            }
+            visitor.visitMethodInsn(Opcodes.INVOKEINTERFACE, ifaceName, method.getName(), descriptor, true);
+            visitor.visitInsn(Type.getReturnType(descriptor).getOpcode(Opcodes.IRETURN));
+            visitor.visitMaxs(0, 0);
+            visitor.visitEnd();
+        }
+        for (String[] method : OBJECT_METHODS) {
+            if (generated.add(method[0] + method[1])) {
+                generateObjectMethod(writer, proxyName, method[0], method[1]);
+            }
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static void generateObjectMethod(ClassWriter writer, String proxyName, String name, String descriptor) {
+        MethodVisitor visitor = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, name, descriptor, null, null);
+        visitor.visitCode();
+        visitor.visitVarInsn(Opcodes.ALOAD, 0);
+        visitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, proxyName, "getTarget", "()Ljava/lang/Object;", false);
+        int slot = 1;
+        for (Type argumentType : Type.getArgumentTypes(descriptor)) {
+            visitor.visitVarInsn(argumentType.getOpcode(Opcodes.ILOAD), slot);
+            slot += argumentType.getSize();
+        }
+        visitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Object", name, descriptor, false);
+        visitor.visitInsn(Type.getReturnType(descriptor).getOpcode(Opcodes.IRETURN));
+        visitor.visitMaxs(0, 0);
+        visitor.visitEnd();
+    }
+
+    private static Object newReflectiveProxy(Class<?> iface, Supplier<Object> supplier) {
+        LazyBeanProxy holder = new LazyBeanProxy(supplier) {
+        };
+        return Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[]{iface}, (proxy, method, args) -> {
+            try {
+                return method.invoke(holder.getTarget(), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+}
@@ -18,21 +18,42 @@
 
 package pers.ykkz000.yukikaze.framework;
 
+import pers.ykkz000.yukikaze.framework.annotation.ContextSnapshot;
 import pers.ykkz000.yukikaze.framework.annotation.EnableModule;
 import pers.ykkz000.yukikaze.framework.annotation.EnableModules;
 import pers.ykkz000.yukikaze.framework.annotation.LoadProperties;
+import pers.ykkz000.yukikaze.framework.annotation.ProfileStartup;
 import pers.ykkz000.yukikaze.framework.api.AnnotationProcessor;
 import pers.ykkz000.yukikaze.framework.api.ModuleStarter;
 import pers.ykkz000.yukikaze.framework.api.annotation.DefineAnnotationProcessors;
+import pers.ykkz000.yukikaze.framework.index.BeanIndex;
+import pers.ykkz000.yukikaze.framework.profile.StartupProfiler;
+import pers.ykkz000.yukikaze.framework.property.PropertyStore;
+import pers.ykkz000.yukikaze.framework.snapshot.StartupSnapshot;
+import pers.ykkz000.yukikaze.framework.util.JacksonUtil;
 import pers.ykkz000.yukikaze.framework.util.ResourceUtil;
+import pers.ykkz000.yukikaze.framework.util.ThreadUtil;
 
 import jakarta.annotation.Nonnull;
+import org.slf4j.LoggerFactory;
 import pers.ykkz000.yukikaze.framework.util.YamlUtil;
 
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The entry point of the application.
@@ -52,28 +73,143 @@ public class YukikazeApplication {
                 .mainClass(mainClass)
                 .args(args)
                 .build();
-        ClassPathBeanScanner classPathBeanScanner = new ClassPathBeanScanner();
+        StartupProfiler profiler = context.getStartupProfiler();
         try {
-            List<ModuleStarter> moduleStarters = processMainClassAnnotations(context, mainClass);
-            List<String> autoLoadBeanNames = classPathBeanScanner.scanBeans(mainClass.getPackageName(), mainClass, context.getBeanFactory());
-            for (String beanName : autoLoadBeanNames) {
-                context.getBeanFactory().getBean(beanName);
+            List<byte[]> propertySources;
+            StartupProfiler.Span readSpan = profiler.start("startup", "properties.read");
+            try (readSpan) {
+                propertySources = readPropertySources(mainClass);
+            }
+            ContextSnapshot contextSnapshot = mainClass.getAnnotation(ContextSnapshot.class);
+            long fingerprint;
+            Optional<StartupSnapshot> snapshot;
+            StartupProfiler.Span snapshotSpan = profiler.start("startup", "snapshot");
+            try (snapshotSpan) {
+                fingerprint = contextSnapshot == null ? 0 : StartupSnapshot.fingerprint(mainClass, propertySources);
+                snapshot = contextSnapshot == null ? Optional.empty() : StartupSnapshot.read(Path.of(contextSnapshot.path()), fingerprint);
+            }
+            List<ModuleStarter> moduleStarters;
+            Map<String, List<String>> dependencyGraph;
+            if (snapshot.isPresent()) {
+                StartupProfiler.Span restoreSpan = profiler.start("startup", "snapshot.restore");
+                try (restoreSpan) {
+                    moduleStarters = restoreSnapshot(context, snapshot.get());
+                    dependencyGraph = snapshot.get().getDependencyGraph();
+                }
+            } else {
+                StartupProfiler.Span parseSpan = profiler.start("startup", "properties.parse");
+                try (parseSpan) {
+                    loadProperties(context, propertySources);
+                }
+                StartupProfiler.Span modulesSpan = profiler.start("startup", "modules");
+                try (modulesSpan) {
+                    moduleStarters = processMainClassAnnotations(context, mainClass);
+                }
+                StartupProfiler.Span scanSpan = profiler.start("startup", "scan");
+                try (scanSpan) {
+                    List<String> autoLoadBeanNames = defineBeans(context, mainClass);
+                    dependencyGraph = context.getBeanFactory().getDependencyGraph(autoLoadBeanNames);
+                }
+            }
+            if (context.getProperties().getBoolean(JacksonUtil.BLACKBIRD_PROPERTY, false)) {
+                JacksonUtil.registerBlackbird(context.getObjectMapper());
+            }
+            context.getCommandRouter().addMetricsRoute();
+            StartupProfiler.Span beansSpan = profiler.start("startup", "beans");
+            try (beansSpan) {
+                context.getBeanFactory().validateBeans();
+                instantiateBeans(context, dependencyGraph);
+            }
+            if (contextSnapshot != null && snapshot.isEmpty()) {
+                StartupProfiler.Span writeSpan = profiler.start("startup", "snapshot.write");
+                try (writeSpan) {
+                    writeSnapshot(context, moduleStarters, dependencyGraph, Path.of(contextSnapshot.path()), fingerprint);
+                }
             }
             for (ModuleStarter moduleStarter : moduleStarters) {
-                moduleStarter.start(context);
+                StartupProfiler.Span moduleSpan = profiler.start("module", moduleStarter.getClass().getName());
+                try (moduleSpan) {
+                    moduleStarter.start(context);
+                }
             }
         } catch (IOException | ClassNotFoundException | InvocationTargetException | InstantiationException |
                  IllegalAccessException | NoSuchMethodException e) {
             throw new RuntimeException(e);
+        } finally {
+            profiler.freeze();
+        }
+        if (mainClass.isAnnotationPresent(ProfileStartup.class)) {
+            writeTrace(context, mainClass.getAnnotation(ProfileStartup.class).tracePath());
         }
         return context;
     }
 
-    private static List<ModuleStarter> processMainClassAnnotations(ApplicationContext context, @Nonnull Class<?> clazz) throws IOException, InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException {
+    private static void writeTrace(ApplicationContext context, String tracePath) {
+        if (tracePath.isEmpty()) {
+            return;
+        }
+        try (OutputStream outputStream = Files.newOutputStream(Path.of(tracePath))) {
+            context.getStartupProfiler().writeChromeTrace(context.getObjectMapper().getFactory(), outputStream);
+        } catch (IOException e) {
+            LoggerFactory.getLogger(YukikazeApplication.class).warn("Failed to write startup trace {}", tracePath, e);
+        }
+    }
+
+    private static List<ModuleStarter> restoreSnapshot(ApplicationContext context, StartupSnapshot snapshot) throws ClassNotFoundException, NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        ClassLoader classLoader = context.getMainClass().getClassLoader();
+        context.setProperties(snapshot.getProperties());
+        for (String className : snapshot.getAnnotationProcessors()) {
+            context.getAnnotationProcessors().add((AnnotationProcessor) classLoader.loadClass(className).getDeclaredConstructor().newInstance());
+        }
         List<ModuleStarter> moduleStarters = new ArrayList<>();
-        if (clazz.isAnnotationPresent(LoadProperties.class)) {
-            processLoadPropertiesAnnotations(context, clazz);
+        for (String className : snapshot.getModuleStarters()) {
+            moduleStarters.add((ModuleStarter) classLoader.loadClass(className).getDeclaredConstructor().newInstance());
+        }
+        for (Map.Entry<String, String> bean : snapshot.getBeans().entrySet()) {
+            context.getBeanFactory().defineBean(bean.getKey(), bean.getValue(), classLoader);
+        }
+        return moduleStarters;
+    }
+
+    private static void writeSnapshot(ApplicationContext context, List<ModuleStarter> moduleStarters, Map<String, List<String>> dependencyGraph, Path path, long fingerprint) {
+        List<String> annotationProcessors = context.getAnnotationProcessors().stream()
+                .filter(annotationProcessor -> !(annotationProcessor instanceof BaseAnnotationProcessor))
+                .map(annotationProcessor -> annotationProcessor.getClass().getName())
+                .toList();
+        List<String> moduleStarterNames = moduleStarters.stream().map(moduleStarter -> moduleStarter.getClass().getName()).toList();
+        StartupSnapshot snapshot = new StartupSnapshot(context.getProperties(), annotationProcessors, moduleStarterNames,
+                new TreeMap<>(context.getBeanFactory().getBeanDefinitions()), dependencyGraph);
+        try {
+            snapshot.write(path, fingerprint);
+        } catch (IOException e) {
+            LoggerFactory.getLogger(YukikazeApplication.class).warn("Failed to write context snapshot {}", path, e);
+        }
+    }
+
+    private static List<String> defineBeans(ApplicationContext context, @Nonnull Class<?> clazz) throws IOException {
+        String basePackage = clazz.getPackageName();
+        Optional<List<String>> indexedBeanNames = new BeanIndex().readBeans(basePackage, clazz, context.getBeanFactory());
+        if (indexedBeanNames.isPresent()) {
+            return indexedBeanNames.get();
+        }
+        return new ClassPathBeanScanner(ForkJoinPool.commonPool()).scanBeans(basePackage, clazz, context.getBeanFactory());
+    }
+
+    private static void instantiateBeans(ApplicationContext context, Map<String, List<String>> dependencyGraph) throws ClassNotFoundException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        if (dependencyGraph.isEmpty()) {
+            return;
+        }
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), dependencyGraph.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, ThreadUtil.newDaemonThreadFactory("yukikaze-bean"));
+        try {
+            context.getBeanFactory().instantiateBeans(dependencyGraph, executor);
+        } finally {
+            executor.shutdown();
         }
+    }
+
+    private static List<ModuleStarter> processMainClassAnnotations(ApplicationContext context, @Nonnull Class<?> clazz) throws IOException, InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException {
+        List<ModuleStarter> moduleStarters = new ArrayList<>();
         if (clazz.isAnnotationPresent(EnableModules.class)) {
             moduleStarters.addAll(processEnableModulesAnnotations(context, clazz));
         }
@@ -83,12 +219,27 @@ public class YukikazeApplication {
         return moduleStarters;
     }
 
-    private static void processLoadPropertiesAnnotations(ApplicationContext context, @Nonnull Class<?> clazz) throws IOException {
-        LoadProperties loadProperties = clazz.getAnnotation(LoadProperties.class);
-        String[] value = loadProperties.path();
-        for (String s : value) {
-            YamlUtil.extractYamlProperties(ResourceUtil.getResourceInputStream(clazz, s), (key, obj) -> context.getProperties().put(key, obj.toString()));
+    private static List<byte[]> readPropertySources(@Nonnull Class<?> clazz) throws IOException {
+        List<byte[]> propertySources = new ArrayList<>();
+        if (clazz.isAnnotationPresent(LoadProperties.class)) {
+            for (String s : clazz.getAnnotation(LoadProperties.class).path()) {
+                try (InputStream inputStream = ResourceUtil.getResourceInputStream(clazz, s)) {
+                    if (inputStream == null) {
+                        throw new FileNotFoundException(s);
+                    }
+                    propertySources.add(inputStream.readAllBytes());
+                }
+            }
+        }
+        return propertySources;
+    }
+
+    private static void loadProperties(ApplicationContext context, List<byte[]> propertySources) {
+        PropertyStore.Builder builder = PropertyStore.builder();
+        for (byte[] propertySource : propertySources) {
+            YamlUtil.extractYamlProperties(new ByteArrayInputStream(propertySource), builder::put);
         }
+        context.setProperties(builder.build());
     }
 
     private static List<ModuleStarter> processEnableModulesAnnotations(ApplicationContext context, @Nonnull Class<?> clazz) throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
@@ -33,4 +33,10 @@ import java.lang.annotation.Target;
 @Target(ElementType.PARAMETER)
 public @interface AutoWire {
     String value();
+
+    /**
+     * Inject a proxy that creates the bean on its first method call instead of the bean itself.
+     * The parameter type must be an interface.
+     */
+    boolean lazy() default false;
 }
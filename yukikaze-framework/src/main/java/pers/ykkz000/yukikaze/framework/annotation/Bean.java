@@ -25,4 +25,14 @@ import java.lang.annotation.*;
 public @interface Bean {
     String name();
     boolean autoLoad() default false;
+
+    /**
+     * Scope of the bean.
+     */
+    BeanScope scope() default BeanScope.SINGLETON;
+
+    /**
+     * Maximum number of instances of a {@link BeanScope#POOLED} bean.
+     */
+    int poolSize() default 8;
 }
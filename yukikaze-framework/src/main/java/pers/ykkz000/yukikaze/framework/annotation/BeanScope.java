@@ -0,0 +1,43 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.annotation;
+
+/**
+ * Scope of a bean, deciding how many instances of it are created.
+ *
+ * @author ykkz000
+ */
+public enum BeanScope {
+    /**
+     * One instance shared by the whole application.
+     */
+    SINGLETON,
+    /**
+     * A new instance every time the bean is requested.
+     */
+    PROTOTYPE,
+    /**
+     * One instance per thread.
+     */
+    THREAD_LOCAL,
+    /**
+     * A bounded pool of instances lent out one caller at a time. The bean is requested or injected as a
+     * {@link pers.ykkz000.yukikaze.framework.BeanPool}.
+     */
+    POOLED
+}
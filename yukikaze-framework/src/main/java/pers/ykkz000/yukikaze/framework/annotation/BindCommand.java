@@ -23,6 +23,13 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Bind a method to a command. The command is the prefix of the {@link Controller} followed by the value, and may be
+ * split into segments by '/': a segment "{name}" binds that segment to the {@link ParamVariable} called name,
+ * "*" matches any one segment and a trailing "**" matches the remaining segments.
+ *
+ * @author ykkz000
+ */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface BindCommand {
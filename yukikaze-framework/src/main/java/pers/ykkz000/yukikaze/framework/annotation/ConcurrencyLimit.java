@@ -0,0 +1,45 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Limit the number of concurrent calls of a {@link BindCommand} method. Calls over the limit fail at once with
+ * status 503. The property "yukikaze.command.&lt;command&gt;.max-concurrency" overrides the value and
+ * "yukikaze.command.&lt;command&gt;.adaptive" the adaptive flag.
+ *
+ * @author ykkz000
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ConcurrencyLimit {
+    /**
+     * Maximum number of concurrent calls.
+     */
+    int value();
+
+    /**
+     * Adjust the limit between 1 and {@link #value()} by the observed latency: lower it when latency grows well above
+     * its baseline and raise it while the limit is in use and latency stays normal.
+     */
+    boolean adaptive() default false;
+}
@@ -0,0 +1,42 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * ConfigurationProperties is used to inject the properties under a prefix into a constructor, bound to a record.
+ * Each record component is bound to the property named after it, in kebab case or as written, and may be a type
+ * supported by {@link Property}, a {@link java.util.List} of strings or a nested record bound to the subtree of
+ * that name. Absent properties leave reference components null and fail for primitive components. Like
+ * {@link Property}, binding errors fail the startup.
+ * Note: Only supported in constructors.
+ *
+ * @author ykkz000
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface ConfigurationProperties {
+    /**
+     * Prefix of the properties without the trailing dot, for example {@code a.b} for the properties {@code a.b.*}.
+     */
+    String value();
+}
@@ -0,0 +1,50 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Property is used to inject a property into a constructor. The property is converted once, when the bean is
+ * planned, to the parameter type: a type supported by {@link ParamVariable} or a {@link java.util.List} of strings.
+ * Every defined bean is planned during startup, so a missing or invalid property fails the startup.
+ * Note: Only supported in constructors.
+ *
+ * @author ykkz000
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface Property {
+    /**
+     * Marker of {@link #defaultValue()} meaning the property is required.
+     */
+    String REQUIRED = "\u0000";
+
+    /**
+     * Key of the property.
+     */
+    String value();
+
+    /**
+     * Value used if the property is absent or null. By default the property is required.
+     */
+    String defaultValue() default REQUIRED;
+}
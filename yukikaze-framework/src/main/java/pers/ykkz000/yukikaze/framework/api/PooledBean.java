@@ -0,0 +1,37 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.api;
+
+/**
+ * Hooks for beans of {@link pers.ykkz000.yukikaze.framework.annotation.BeanScope#POOLED} scope.
+ *
+ * @author ykkz000
+ */
+public interface PooledBean {
+    /**
+     * Called before the bean is lent out of its pool.
+     */
+    default void onBorrow() {
+    }
+
+    /**
+     * Called when the bean is returned to its pool, to reset any state left by the borrower.
+     */
+    default void onReturn() {
+    }
+}
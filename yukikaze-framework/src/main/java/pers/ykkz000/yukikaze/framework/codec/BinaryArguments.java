@@ -0,0 +1,239 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.codec;
+
+import pers.ykkz000.yukikaze.framework.route.CommandArguments;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Arguments encoded by {@link BinaryCommandCodec}. The buffer is scanned once for the offsets of the names and
+ * values; typed values are read by the getter of their type without text conversion, and values sent as strings
+ * are parsed like arguments of other sources.
+ *
+ * @author ykkz000
+ */
+class BinaryArguments implements CommandArguments {
+    private final ByteBuffer buffer;
+    private final int[] offsets;
+
+    /**
+     * Scan arguments.
+     *
+     * @param payload Encoded arguments between position and limit.
+     * @throws IllegalArgumentException Thrown if the arguments are malformed.
+     */
+    BinaryArguments(ByteBuffer payload) throws IllegalArgumentException {
+        buffer = payload.duplicate();
+        try {
+            int count = BinaryCommandCodec.readLength(buffer);
+            offsets = new int[count * 3];
+            for (int i = 0; i < offsets.length; i += 3) {
+                int nameLength = BinaryCommandCodec.readLength(buffer);
+                offsets[i] = buffer.position();
+                offsets[i + 1] = nameLength;
+                buffer.position(buffer.position() + nameLength);
+                offsets[i + 2] = buffer.position();
+                skipValue(buffer.get() & 0xff);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated arguments", e);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Trailing bytes after arguments");
+        }
+    }
+
+    private void skipValue(int tag) throws IllegalArgumentException {
+        switch (tag) {
+            case BinaryCommandCodec.NULL, BinaryCommandCodec.FALSE, BinaryCommandCodec.TRUE -> {
+            }
+            case BinaryCommandCodec.INT, BinaryCommandCodec.CHAR -> BinaryCommandCodec.readVarint(buffer);
+            case BinaryCommandCodec.FLOAT -> buffer.position(buffer.position() + Float.BYTES);
+            case BinaryCommandCodec.DOUBLE -> buffer.position(buffer.position() + Double.BYTES);
+            case BinaryCommandCodec.STRING, BinaryCommandCodec.BYTES -> {
+                int length = BinaryCommandCodec.readLength(buffer);
+                buffer.position(buffer.position() + length);
+            }
+            default -> throw new IllegalArgumentException("Unsupported argument tag " + tag);
+        }
+    }
+
+    @Override
+    public String getString(String name) {
+        int value = find(name);
+        if (value < 0) {
+            return null;
+        }
+        int tag = buffer.get(value) & 0xff;
+        ByteBuffer reader = buffer.duplicate().position(value + 1);
+        return switch (tag) {
+            case BinaryCommandCodec.NULL -> null;
+            case BinaryCommandCodec.STRING, BinaryCommandCodec.BYTES -> {
+                int length = BinaryCommandCodec.readLength(reader);
+                yield BinaryCommandCodec.decodeString(reader, reader.position(), length);
+            }
+            default -> String.valueOf(BinaryCommandCodec.readValue(reader, tag));
+        };
+    }
+
+    @Override
+    public byte getByte(String name) throws NumberFormatException {
+        long value = getLong(name);
+        if (value != (byte) value) {
+            throw new NumberFormatException("Value out of range of byte: " + value);
+        }
+        return (byte) value;
+    }
+
+    @Override
+    public char getChar(String name) {
+        int value = find(name);
+        if (value >= 0 && buffer.get(value) == BinaryCommandCodec.CHAR) {
+            return (char) readVarint(value + 1);
+        }
+        String string = value < 0 ? null : getString(name);
+        if (string == null || string.isEmpty()) {
+            throw new IllegalArgumentException("Missing character argument: " + name);
+        }
+        return string.charAt(0);
+    }
+
+    @Override
+    public short getShort(String name) throws NumberFormatException {
+        long value = getLong(name);
+        if (value != (short) value) {
+            throw new NumberFormatException("Value out of range of short: " + value);
+        }
+        return (short) value;
+    }
+
+    @Override
+    public int getInt(String name) throws NumberFormatException {
+        long value = getLong(name);
+        if (value != (int) value) {
+            throw new NumberFormatException("Value out of range of int: " + value);
+        }
+        return (int) value;
+    }
+
+    @Override
+    public long getLong(String name) throws NumberFormatException {
+        int value = require(name);
+        int tag = buffer.get(value);
+        if (tag == BinaryCommandCodec.INT) {
+            long zigzag = readVarint(value + 1);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        if (tag == BinaryCommandCodec.STRING) {
+            return Long.parseLong(getString(name));
+        }
+        throw new NumberFormatException("Argument " + name + " is not an integer");
+    }
+
+    @Override
+    public float getFloat(String name) throws NumberFormatException {
+        int value = require(name);
+        int tag = buffer.get(value);
+        if (tag == BinaryCommandCodec.FLOAT) {
+            return buffer.getFloat(value + 1);
+        }
+        if (tag == BinaryCommandCodec.STRING) {
+            return Float.parseFloat(getString(name));
+        }
+        return (float) getDouble(name);
+    }
+
+    @Override
+    public double getDouble(String name) throws NumberFormatException {
+        int value = require(name);
+        return switch (buffer.get(value)) {
+            case BinaryCommandCodec.DOUBLE -> buffer.getDouble(value + 1);
+            case BinaryCommandCodec.FLOAT -> buffer.getFloat(value + 1);
+            case BinaryCommandCodec.INT -> getLong(name);
+            case BinaryCommandCodec.STRING -> Double.parseDouble(getString(name));
+            default -> throw new NumberFormatException("Argument " + name + " is not a number");
+        };
+    }
+
+    @Override
+    public boolean getBoolean(String name) {
+        int value = find(name);
+        if (value < 0) {
+            return false;
+        }
+        return switch (buffer.get(value)) {
+            case BinaryCommandCodec.TRUE -> true;
+            case BinaryCommandCodec.STRING -> Boolean.parseBoolean(getString(name));
+            default -> false;
+        };
+    }
+
+    /**
+     * Read a varint validated by the constructor without moving the buffer.
+     */
+    private long readVarint(int offset) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get(offset++);
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private int require(String name) throws NumberFormatException {
+        int value = find(name);
+        if (value < 0 || buffer.get(value) == BinaryCommandCodec.NULL) {
+            throw new NumberFormatException("Missing argument: " + name);
+        }
+        return value;
+    }
+
+    /**
+     * Find an argument.
+     *
+     * @return Offset of the tag of its value, or -1 if absent.
+     */
+    private int find(String name) {
+        for (int i = 0; i < offsets.length; i += 3) {
+            if (nameEquals(offsets[i], offsets[i + 1], name)) {
+                return offsets[i + 2];
+            }
+        }
+        return -1;
+    }
+
+    private boolean nameEquals(int start, int length, String name) {
+        if (length != name.length()) {
+            return length > name.length() && BinaryCommandCodec.decodeString(buffer, start, length).equals(name);
+        }
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(start + i);
+            if (b < 0) {
+                return BinaryCommandCodec.decodeString(buffer, start, length).equals(name);
+            }
+            if (b != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
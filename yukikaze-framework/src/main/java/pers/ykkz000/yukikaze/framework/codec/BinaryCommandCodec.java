@@ -0,0 +1,277 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pers.ykkz000.yukikaze.framework.route.CommandArguments;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.BaseStream;
+
+/**
+ * Compact binary codec. Every value starts with a one-byte tag; integers of every width are zigzag varints, floats
+ * and doubles are raw big-endian IEEE 754 values, strings are varint-length-prefixed UTF-8. Arguments are a varint
+ * count followed by name and value pairs, and are read by {@link BinaryArguments} straight from the buffer, so
+ * primitive parameters are never converted to text. Results other than plain values are serialized by the object
+ * mapper through a {@link BinaryGenerator}; their arrays and objects are terminated by an end tag, so
+ * {@link BaseStream} and {@link java.util.Iterator} results are written item by item while they are consumed.
+ * Decoding rejects negative or overlong lengths and nesting deeper than {@value #MAX_DEPTH} levels as malformed.
+ *
+ * @author ykkz000
+ */
+public class BinaryCommandCodec implements CommandCodec {
+    public static final int ID = 2;
+    static final int NULL = 0;
+    static final int FALSE = 1;
+    static final int TRUE = 2;
+    static final int INT = 3;
+    static final int FLOAT = 4;
+    static final int DOUBLE = 5;
+    static final int STRING = 6;
+    static final int CHAR = 7;
+    static final int BYTES = 8;
+    static final int ARRAY = 9;
+    static final int OBJECT = 10;
+    static final int END = 11;
+    /**
+     * Deepest nesting of arrays and objects accepted when decoding, the default limit of Jackson when writing.
+     */
+    static final int MAX_DEPTH = 1000;
+    private final ObjectMapper objectMapper;
+
+    public BinaryCommandCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public void encodeArguments(Map<String, ?> args, OutputStream out) throws IOException {
+        writeVarint(out, args.size());
+        for (Map.Entry<String, ?> arg : args.entrySet()) {
+            writeString(out, arg.getKey());
+            Object value = arg.getValue();
+            if (!isScalar(value)) {
+                throw new IOException("Argument " + arg.getKey() + " of type " + value.getClass().getName() + " is not a scalar");
+            }
+            writeValue(out, value);
+        }
+    }
+
+    @Override
+    public CommandArguments decodeArguments(ByteBuffer payload) throws IllegalArgumentException {
+        return new BinaryArguments(payload);
+    }
+
+    @Override
+    public void encodeResult(Object result, OutputStream out) throws IOException {
+        writeValue(out, result);
+    }
+
+    @Override
+    public Object decodeResult(ByteBuffer payload) throws IOException {
+        ByteBuffer buffer = payload.duplicate();
+        try {
+            Object result = readValue(buffer, buffer.get() & 0xff);
+            if (buffer.hasRemaining()) {
+                throw new IOException("Trailing bytes after result");
+            }
+            return result;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Malformed result", e);
+        }
+    }
+
+    private static boolean isScalar(Object value) {
+        return value == null || value instanceof Boolean || value instanceof CharSequence || value instanceof Character || value instanceof byte[]
+                || value instanceof Number && !(value instanceof BigInteger || value instanceof BigDecimal);
+    }
+
+    private void writeValue(OutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof Boolean b) {
+            out.write(b ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            out.write(INT);
+            writeZigzag(out, ((Number) value).longValue());
+        } else if (value instanceof Double d) {
+            out.write(DOUBLE);
+            writeLong(out, Double.doubleToRawLongBits(d));
+        } else if (value instanceof Float f) {
+            out.write(FLOAT);
+            writeInt(out, Float.floatToRawIntBits(f));
+        } else if (value instanceof CharSequence s) {
+            out.write(STRING);
+            writeString(out, s.toString());
+        } else if (value instanceof Character c) {
+            out.write(CHAR);
+            writeVarint(out, c);
+        } else if (value instanceof byte[] bytes) {
+            out.write(BYTES);
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+        } else if (value instanceof BaseStream<?, ?> stream) {
+            try (stream) {
+                writeObject(out, stream.iterator());
+            }
+        } else {
+            writeObject(out, value);
+        }
+    }
+
+    private void writeObject(OutputStream out, Object value) throws IOException {
+        try (BinaryGenerator generator = new BinaryGenerator(objectMapper, out)) {
+            objectMapper.writeValue(generator, value);
+        }
+    }
+
+    static Object readValue(ByteBuffer buffer, int tag) throws IllegalArgumentException {
+        return readValue(buffer, tag, 0);
+    }
+
+    private static Object readValue(ByteBuffer buffer, int tag, int depth) throws IllegalArgumentException {
+        switch (tag) {
+            case NULL:
+                return null;
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case INT: {
+                long value = readZigzag(buffer);
+                return value == (int) value ? (Object) (int) value : (Object) value;
+            }
+            case FLOAT:
+                return buffer.getFloat();
+            case DOUBLE:
+                return buffer.getDouble();
+            case STRING: {
+                int length = readLength(buffer);
+                String value = decodeString(buffer, buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                return value;
+            }
+            case CHAR:
+                return (char) readVarint(buffer);
+            case BYTES: {
+                byte[] bytes = new byte[readLength(buffer)];
+                buffer.get(bytes);
+                return bytes;
+            }
+            case ARRAY: {
+                checkDepth(depth);
+                List<Object> list = new ArrayList<>();
+                for (int item = buffer.get() & 0xff; item != END; item = buffer.get() & 0xff) {
+                    list.add(readValue(buffer, item, depth + 1));
+                }
+                return list;
+            }
+            case OBJECT: {
+                checkDepth(depth);
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int key = buffer.get() & 0xff; key != END; key = buffer.get() & 0xff) {
+                    map.put(readValue(buffer, key, depth + 1), readValue(buffer, buffer.get() & 0xff, depth + 1));
+                }
+                return map;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown tag " + tag);
+        }
+    }
+
+    private static void checkDepth(int depth) throws IllegalArgumentException {
+        if (depth >= MAX_DEPTH) {
+            throw new IllegalArgumentException("Nesting deeper than " + MAX_DEPTH);
+        }
+    }
+
+    static String decodeString(ByteBuffer buffer, int offset, int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int readLength(ByteBuffer buffer) throws IllegalArgumentException {
+        long length = readVarint(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length " + length + " with " + buffer.remaining() + " bytes remaining");
+        }
+        return (int) length;
+    }
+
+    static long readZigzag(ByteBuffer buffer) throws IllegalArgumentException {
+        long value = readVarint(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long readVarint(ByteBuffer buffer) throws IllegalArgumentException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint is too long");
+    }
+
+    private static void writeString(OutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeZigzag(OutputStream out, long value) throws IOException {
+        writeVarint(out, (value << 1) ^ (value >> 63));
+    }
+
+    private static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeLong(OutputStream out, long value) throws IOException {
+        writeInt(out, (int) (value >>> 32));
+        writeInt(out, (int) value);
+    }
+}
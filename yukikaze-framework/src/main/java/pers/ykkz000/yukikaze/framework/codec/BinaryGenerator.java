@@ -0,0 +1,324 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.codec;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.ErrorReportConfiguration;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.core.base.GeneratorBase;
+import com.fasterxml.jackson.core.io.ContentReference;
+import com.fasterxml.jackson.core.io.IOContext;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.core.json.JsonWriteContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generator writing the format of {@link BinaryCommandCodec}, so values are serialized by the serializers of the
+ * object mapper straight into binary without producing JSON text. Objects and arrays are written with an end tag
+ * since their sizes are not known in advance. Bytes are buffered and written to the target when the buffer is full
+ * or the generator is flushed. Raw values, such as those of {@code @JsonRawValue} properties, cannot be embedded in
+ * binary and are written as strings holding their text; raw fragments outside a value are not supported.
+ *
+ * @author ykkz000
+ */
+class BinaryGenerator extends GeneratorBase {
+    private static final int BUFFER_SIZE = 8192;
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    BinaryGenerator(ObjectCodec codec, OutputStream out) {
+        super(0, codec, ioContext(codec.getFactory(), out));
+        this.out = out;
+    }
+
+    /**
+     * Create the I/O context of a generator, carrying the stream constraints of the factory. Its buffer recycler is
+     * never asked for buffers, as the generator keeps its own buffer.
+     */
+    private static IOContext ioContext(JsonFactory factory, OutputStream out) {
+        return new IOContext(factory.streamReadConstraints(), factory.streamWriteConstraints(), ErrorReportConfiguration.defaults(),
+                new BufferRecycler(), ContentReference.rawReference(false, out), false);
+    }
+
+    @Override
+    public Version version() {
+        return Version.unknownVersion();
+    }
+
+    @Override
+    public void writeStartArray() throws IOException {
+        _verifyValueWrite("start an array");
+        _writeContext = _writeContext.createChildArrayContext();
+        writeByte(BinaryCommandCodec.ARRAY);
+    }
+
+    @Override
+    public void writeEndArray() throws IOException {
+        if (!_writeContext.inArray()) {
+            _reportError("Current context not an array but " + _writeContext.typeDesc());
+        }
+        _writeContext = _writeContext.clearAndGetParent();
+        writeByte(BinaryCommandCodec.END);
+    }
+
+    @Override
+    public void writeStartObject() throws IOException {
+        _verifyValueWrite("start an object");
+        _writeContext = _writeContext.createChildObjectContext();
+        writeByte(BinaryCommandCodec.OBJECT);
+    }
+
+    @Override
+    public void writeEndObject() throws IOException {
+        if (!_writeContext.inObject()) {
+            _reportError("Current context not an object but " + _writeContext.typeDesc());
+        }
+        _writeContext = _writeContext.clearAndGetParent();
+        writeByte(BinaryCommandCodec.END);
+    }
+
+    @Override
+    public void writeFieldName(String name) throws IOException {
+        if (_writeContext.writeFieldName(name) == JsonWriteContext.STATUS_EXPECT_VALUE) {
+            _reportError("Can not write a field name, expecting a value");
+        }
+        writeTaggedString(name);
+    }
+
+    @Override
+    public void writeFieldName(SerializableString name) throws IOException {
+        if (_writeContext.writeFieldName(name.getValue()) == JsonWriteContext.STATUS_EXPECT_VALUE) {
+            _reportError("Can not write a field name, expecting a value");
+        }
+        byte[] bytes = name.asUnquotedUTF8();
+        writeByte(BinaryCommandCodec.STRING);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void writeString(String text) throws IOException {
+        _verifyValueWrite("write a string");
+        if (text == null) {
+            writeByte(BinaryCommandCodec.NULL);
+        } else {
+            writeTaggedString(text);
+        }
+    }
+
+    @Override
+    public void writeString(char[] text, int offset, int length) throws IOException {
+        writeString(new String(text, offset, length));
+    }
+
+    @Override
+    public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+        writeUTF8String(text, offset, length);
+    }
+
+    @Override
+    public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+        _verifyValueWrite("write a string");
+        writeByte(BinaryCommandCodec.STRING);
+        writeBytes(text, offset, length);
+    }
+
+    @Override
+    public void writeRaw(String text) {
+        throw new UnsupportedOperationException("Raw fragments are not supported by the binary format");
+    }
+
+    @Override
+    public void writeRaw(String text, int offset, int length) {
+        throw new UnsupportedOperationException("Raw fragments are not supported by the binary format");
+    }
+
+    @Override
+    public void writeRaw(char[] text, int offset, int length) {
+        throw new UnsupportedOperationException("Raw fragments are not supported by the binary format");
+    }
+
+    @Override
+    public void writeRaw(char c) {
+        throw new UnsupportedOperationException("Raw fragments are not supported by the binary format");
+    }
+
+    @Override
+    public void writeRawValue(String text) throws IOException {
+        writeString(text);
+    }
+
+    @Override
+    public void writeRawValue(String text, int offset, int length) throws IOException {
+        writeString(text.substring(offset, offset + length));
+    }
+
+    @Override
+    public void writeRawValue(char[] text, int offset, int length) throws IOException {
+        writeString(text, offset, length);
+    }
+
+    @Override
+    public void writeRawValue(SerializableString text) throws IOException {
+        writeString(text.getValue());
+    }
+
+    @Override
+    public void writeBinary(Base64Variant variant, byte[] data, int offset, int length) throws IOException {
+        _verifyValueWrite("write a binary value");
+        writeByte(BinaryCommandCodec.BYTES);
+        writeBytes(data, offset, length);
+    }
+
+    @Override
+    public void writeNumber(int value) throws IOException {
+        writeNumber((long) value);
+    }
+
+    @Override
+    public void writeNumber(long value) throws IOException {
+        _verifyValueWrite("write a number");
+        writeByte(BinaryCommandCodec.INT);
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    @Override
+    public void writeNumber(BigInteger value) throws IOException {
+        if (value != null && value.bitLength() < Long.SIZE) {
+            writeNumber(value.longValue());
+        } else {
+            writeString(value == null ? null : value.toString());
+        }
+    }
+
+    @Override
+    public void writeNumber(double value) throws IOException {
+        _verifyValueWrite("write a number");
+        writeByte(BinaryCommandCodec.DOUBLE);
+        writeFixed(Double.doubleToRawLongBits(value), Long.BYTES);
+    }
+
+    @Override
+    public void writeNumber(float value) throws IOException {
+        _verifyValueWrite("write a number");
+        writeByte(BinaryCommandCodec.FLOAT);
+        writeFixed(Float.floatToRawIntBits(value), Integer.BYTES);
+    }
+
+    @Override
+    public void writeNumber(BigDecimal value) throws IOException {
+        writeString(value == null ? null : value.toString());
+    }
+
+    @Override
+    public void writeNumber(String encodedValue) throws IOException {
+        writeString(encodedValue);
+    }
+
+    @Override
+    public void writeBoolean(boolean state) throws IOException {
+        _verifyValueWrite("write a boolean");
+        writeByte(state ? BinaryCommandCodec.TRUE : BinaryCommandCodec.FALSE);
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        _verifyValueWrite("write a null");
+        writeByte(BinaryCommandCodec.NULL);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!isClosed()) {
+            super.close();
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    @Override
+    protected void _releaseBuffers() {
+    }
+
+    @Override
+    protected void _verifyValueWrite(String typeMsg) throws IOException {
+        if (_writeContext.writeValue() == JsonWriteContext.STATUS_EXPECT_NAME) {
+            _reportError("Can not " + typeMsg + ", expecting a field name");
+        }
+    }
+
+    private void writeTaggedString(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeByte(BinaryCommandCodec.STRING);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Write a varint length followed by bytes.
+     */
+    private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        writeVarint(length);
+        if (length > BUFFER_SIZE - position) {
+            out.write(buffer, 0, position);
+            position = 0;
+            if (length > BUFFER_SIZE) {
+                out.write(bytes, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == BUFFER_SIZE) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    private void writeFixed(long value, int bytes) throws IOException {
+        for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+            writeByte((int) (value >>> shift));
+        }
+    }
+}
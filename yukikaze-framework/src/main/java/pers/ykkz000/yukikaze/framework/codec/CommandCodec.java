@@ -0,0 +1,100 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pers.ykkz000.yukikaze.framework.route.CommandArguments;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Wire format of the arguments and results of commands sent over a transport. Implementations are identified on
+ * the wire by {@link #getId()}; besides the built-in {@link JsonCommandCodec} and {@link BinaryCommandCodec},
+ * codecs can be provided as {@link ServiceLoader} services with a public no-argument constructor.
+ *
+ * @author ykkz000
+ */
+public interface CommandCodec {
+    /**
+     * Load the built-in codecs and the codecs provided as services.
+     *
+     * @param objectMapper Object mapper of the built-in codecs.
+     * @return Codecs indexed by their id.
+     * @throws IllegalStateException Thrown if two codecs have the same id.
+     */
+    static CommandCodec[] load(ObjectMapper objectMapper) throws IllegalStateException {
+        List<CommandCodec> codecs = new ArrayList<>(List.of(new JsonCommandCodec(objectMapper), new BinaryCommandCodec(objectMapper)));
+        ServiceLoader.load(CommandCodec.class).forEach(codecs::add);
+        CommandCodec[] byId = new CommandCodec[256];
+        for (CommandCodec codec : codecs) {
+            int id = codec.getId() & 0xff;
+            if (byId[id] != null) {
+                throw new IllegalStateException("Codecs " + byId[id].getClass().getName() + " and " + codec.getClass().getName() + " have the same id " + id);
+            }
+            byId[id] = codec;
+        }
+        return byId;
+    }
+
+    /**
+     * Get the id of the codec on the wire.
+     *
+     * @return Id between 1 and 255.
+     */
+    int getId();
+
+    /**
+     * Encode the arguments of a command.
+     *
+     * @param args Arguments, with values of types supported by the codec.
+     * @param out  Output, may be closed by the codec.
+     * @throws IOException Thrown if the arguments cannot be encoded.
+     */
+    void encodeArguments(Map<String, ?> args, OutputStream out) throws IOException;
+
+    /**
+     * Decode the arguments of a command. The returned arguments may read the buffer lazily, so it must stay
+     * unchanged while they are used.
+     *
+     * @param payload Encoded arguments between position and limit.
+     * @return Arguments.
+     * @throws IllegalArgumentException Thrown if the arguments are malformed.
+     */
+    CommandArguments decodeArguments(ByteBuffer payload) throws IllegalArgumentException;
+
+    /**
+     * Encode the result of a command.
+     *
+     * @param result Result returned by the handler.
+     * @param out    Output, may be closed by the codec.
+     * @throws IOException Thrown if the result cannot be encoded.
+     */
+    void encodeResult(Object result, OutputStream out) throws IOException;
+
+    /**
+     * Decode the result of a command into plain values: null, booleans, numbers, strings, lists and maps.
+     *
+     * @param payload Encoded result between position and limit.
+     * @return Result.
+     * @throws IOException Thrown if the result is malformed.
+     */
+    Object decodeResult(ByteBuffer payload) throws IOException;
+}
@@ -0,0 +1,121 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.codec;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pers.ykkz000.yukikaze.framework.route.CommandArguments;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.BaseStream;
+
+/**
+ * Codec encoding arguments as a JSON object and results as JSON with the object mapper of the application.
+ * Arguments are decoded to text and parsed by the handlers like arguments of other sources. {@link BaseStream} and
+ * {@link Iterator} results are written as arrays while they are consumed.
+ *
+ * @author ykkz000
+ */
+public class JsonCommandCodec implements CommandCodec {
+    public static final int ID = 1;
+    private final ObjectMapper objectMapper;
+
+    public JsonCommandCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public void encodeArguments(Map<String, ?> args, OutputStream out) throws IOException {
+        objectMapper.writeValue(out, args);
+    }
+
+    @Override
+    public CommandArguments decodeArguments(ByteBuffer payload) throws IllegalArgumentException {
+        if (!payload.hasRemaining()) {
+            return CommandArguments.of(Map.of());
+        }
+        JsonNode root;
+        try {
+            root = payload.hasArray()
+                    ? objectMapper.readTree(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining())
+                    : objectMapper.readTree(toArray(payload));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed JSON arguments", e);
+        }
+        if (!root.isObject()) {
+            throw new IllegalArgumentException("JSON arguments must be an object");
+        }
+        Map<String, String> args = new HashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = root.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            if (!value.isNull()) {
+                args.put(field.getKey(), value.isValueNode() ? value.asText() : value.toString());
+            }
+        }
+        return CommandArguments.of(args);
+    }
+
+    @Override
+    public void encodeResult(Object result, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.createGenerator(out, JsonEncoding.UTF8)) {
+            if (result instanceof BaseStream<?, ?> stream) {
+                try (stream) {
+                    writeItems(generator, stream.iterator());
+                }
+            } else if (result instanceof Iterator<?> iterator) {
+                writeItems(generator, iterator);
+            } else {
+                objectMapper.writeValue(generator, result);
+            }
+        }
+    }
+
+    private void writeItems(JsonGenerator generator, Iterator<?> iterator) throws IOException {
+        generator.writeStartArray();
+        while (iterator.hasNext()) {
+            objectMapper.writeValue(generator, iterator.next());
+        }
+        generator.writeEndArray();
+    }
+
+    @Override
+    public Object decodeResult(ByteBuffer payload) throws IOException {
+        return payload.hasArray()
+                ? objectMapper.readValue(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining(), Object.class)
+                : objectMapper.readValue(toArray(payload), Object.class);
+    }
+
+    private static byte[] toArray(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(payload.position(), bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.framework.index;
+
+import pers.ykkz000.yukikaze.framework.BeanFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Bean index generated at build time by {@link BeanIndexProcessor}.
+ * Each line of the index is "name\tclassName\tautoLoad".
+ *
+ * @author ykkz000
+ */
+public class BeanIndex {
+    /**
+     * Location of the index in the classpath.
+     */
+    public static final String LOCATION = "META-INF/yukikaze/beans.idx";
+    static final String SEPARATOR = "\t";
+    static final String COMMENT = "#";
+
+    /**
+     * Define beans listed in the indexes on the classpath. The indexes are only trusted if every classpath root
+     * containing the base package has one, since beans in a root without an index would be missed otherwise.
+     *
+     * @param basePackage Only beans under this package will be defined.
+     * @param clazz       Class whose class loader is used to find the indexes and load beans.
+     * @param beanFactory Bean factory.
+     * @return Names of the beans to be loaded automatically, or empty if the indexes do not cover the base package
+     * and the classpath must be scanned instead.
+     * @throws IOException If failed to read an index.
+     */
+    public Optional<List<String>> readBeans(String basePackage, Class<?> clazz, BeanFactory beanFactory) throws IOException {
+        ClassLoader classLoader = clazz.getClassLoader();
+        Set<String> indexes = new HashSet<>();
+        for (Enumeration<URL> urls = classLoader.getResources(LOCATION); urls.hasMoreElements(); ) {
+            indexes.add(urls.nextElement().toString());
+        }
+        if (indexes.isEmpty()) {
+            return Optional.empty();
+        }
+        String basePackagePath = basePackage.replace('.', '/');
+        Set<String> coveringIndexes = new LinkedHashSet<>();
+        for (Enumeration<URL> roots = classLoader.getResources(basePackagePath); roots.hasMoreElements(); ) {
+            String index = rootOf(roots.nextElement().toString(), basePackagePath) + LOCATION;
+            if (!indexes.contains(index)) {
+                return Optional.empty();
+            }
+            coveringIndexes.add(index);
+        }
+        if (coveringIndexes.isEmpty()) {
+            return Optional.empty();
+        }
+        List<String> autoLoadBeanNames = new ArrayList<>();
+        String packagePrefix = basePackage.isEmpty() ? "" : basePackage + ".";
+        for (String index : coveringIndexes) {
+            try (InputStream inputStream = URI.create(index).toURL().openStream()) {
+                for (Entry entry : read(inputStream)) {
+                    if (!entry.className().startsWith(packagePrefix)) {
+                        continue;
+                    }
+                    beanFactory.defineBean(entry.name(), entry.className(), classLoader);
+                    if (entry.autoLoad()) {
+                        autoLoadBeanNames.add(entry.name());
+                    }
+                }
+            }
+        }
+        return Optional.of(autoLoadBeanNames);
+    }
+
+    /**
+     * Get the classpath root of a package from the URL of the package, ending with a slash.
+     */
+    private static String rootOf(String packageUrl, String packagePath) {
+        String root = packageUrl.endsWith("/") ? packageUrl.substring(0, packageUrl.length() - 1) : packageUrl;
+        if (!packagePath.isEmpty() && root.endsWith(packagePath)) {
+            root = root.substring(0, root.length() - packagePath.length());
+        }
+        return root.endsWith("/") ? root : root + "/";
+    }
+
+    static List<Entry> read(InputStream inputStream) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank() || line.startsWith(COMMENT)) {
+                continue;
+            }
+            String[] fields = line.split(SEPARATOR);
+            if (fields.length != 3) {
+                throw new IOException("Malformed bean index line: " + line);
+            }
+            entries.add(new Entry(fields[0], fields[1], Boolean.parseBoolean(fields[2])));
+        }
+        return entries;
+    }
+
+    record Entry(String name, String className, boolean autoLoad) {
+        String format() {
+            return name + SEPARATOR + className + SEPARATOR + autoLoad;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.framework.index;
+
+import pers.ykkz000.yukikaze.framework.annotation.Bean;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Annotation processor that writes {@link BeanIndex#LOCATION} so that beans can be defined without scanning the classpath.
+ * Entries of a previous compilation are kept as long as their classes are still annotated with {@link Bean},
+ * so incremental compilation does not lose beans.
+ *
+ * @author ykkz000
+ */
+@SupportedAnnotationTypes("pers.ykkz000.yukikaze.framework.annotation.Bean")
+public class BeanIndexProcessor extends AbstractProcessor {
+    private final Map<String, BeanIndex.Entry> entries = new LinkedHashMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Bean.class)) {
+            if (element.getKind() != ElementKind.CLASS && element.getKind() != ElementKind.RECORD) {
+                continue;
+            }
+            Bean bean = element.getAnnotation(Bean.class);
+            String className = processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString();
+            entries.put(className, new BeanIndex.Entry(bean.name(), className, bean.autoLoad()));
+        }
+        if (roundEnv.processingOver() && !entries.isEmpty()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    private void writeIndex() {
+        Map<String, BeanIndex.Entry> merged = new LinkedHashMap<>();
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", BeanIndex.LOCATION);
+            try (InputStream inputStream = existing.openInputStream()) {
+                for (BeanIndex.Entry entry : BeanIndex.read(inputStream)) {
+                    if (isStillBean(entry.className())) {
+                        merged.put(entry.className(), entry);
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // No index from a previous compilation.
+        }
+        merged.putAll(entries);
+        try {
+            FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", BeanIndex.LOCATION);
+            try (Writer writer = new OutputStreamWriter(index.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write(BeanIndex.COMMENT + " Generated by " + getClass().getName() + "\n");
+                for (BeanIndex.Entry entry : merged.values()) {
+                    writer.write(entry.format());
+                    writer.write("\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write bean index: " + e.getMessage());
+        }
+    }
+
+    private boolean isStillBean(String className) {
+        TypeElement typeElement = processingEnv.getElementUtils().getTypeElement(className.replace('$', '.'));
+        return typeElement != null && typeElement.getAnnotation(Bean.class) != null;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.profile;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Profiler of the application startup. Each phase is measured by a {@link Span} recording its wall time and the
+ * bytes allocated by its thread. A disabled profiler hands out a shared span that records nothing, and so does a
+ * profiler once it is frozen at the end of the startup, so beans created later do not keep adding records.
+ *
+ * @author ykkz000
+ */
+public class StartupProfiler {
+    /**
+     * Profiler recording nothing.
+     */
+    public static final StartupProfiler DISABLED = new StartupProfiler(false);
+    private static final Span NOOP_SPAN = () -> {
+    };
+    @Getter
+    private final boolean enabled;
+    private final long origin;
+    private final com.sun.management.ThreadMXBean allocationBean;
+    private final Queue<Record> records;
+    private volatile boolean frozen;
+
+    public StartupProfiler() {
+        this(true);
+    }
+
+    private StartupProfiler(boolean enabled) {
+        this.enabled = enabled;
+        this.origin = System.nanoTime();
+        ThreadMXBean threadBean = enabled ? ManagementFactory.getThreadMXBean() : null;
+        this.allocationBean = threadBean instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled() ? bean : null;
+        this.records = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Start measuring a phase. The phase ends when the span is closed.
+     *
+     * @param category Category of the phase, such as "bean".
+     * @param name     Name of the phase.
+     * @return The span of the phase.
+     */
+    public Span start(String category, String name) {
+        if (!enabled || frozen) {
+            return NOOP_SPAN;
+        }
+        Thread thread = Thread.currentThread();
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        return () -> {
+            if (frozen) {
+                return;
+            }
+            long end = System.nanoTime();
+            long allocatedBytes = allocated < 0 ? -1 : allocatedBytes() - allocated;
+            records.add(new Record(category, name, thread.getId(), thread.getName(), start - origin, end - start, allocatedBytes));
+        };
+    }
+
+    /**
+     * Stop recording. Spans started afterwards record nothing, and spans still open are dropped when closed.
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    private long allocatedBytes() {
+        return allocationBean == null ? -1 : allocationBean.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Get the recorded phases.
+     *
+     * @return Phases in the order they ended.
+     */
+    public List<Record> getRecords() {
+        return List.copyOf(records);
+    }
+
+    /**
+     * Write the recorded phases in the Chrome trace event format, viewable in chrome://tracing or Perfetto.
+     *
+     * @param jsonFactory  JSON factory.
+     * @param outputStream Output stream, left open.
+     * @throws IOException If failed to write.
+     */
+    public void writeChromeTrace(JsonFactory jsonFactory, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(outputStream, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("traceEvents");
+            for (Record record : records) {
+                generator.writeStartObject();
+                generator.writeStringField("name", record.name());
+                generator.writeStringField("cat", record.category());
+                generator.writeStringField("ph", "X");
+                generator.writeNumberField("ts", record.startNanos() / 1000.0);
+                generator.writeNumberField("dur", record.durationNanos() / 1000.0);
+                generator.writeNumberField("pid", 1);
+                generator.writeNumberField("tid", record.threadId());
+                generator.writeObjectFieldStart("args");
+                generator.writeStringField("thread", record.threadName());
+                generator.writeNumberField("allocatedBytes", record.allocatedBytes());
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeStringField("displayTimeUnit", "ns");
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Measurement of a phase, ended by {@link #close()}.
+     */
+    @FunctionalInterface
+    public interface Span extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * A measured phase.
+     *
+     * @param category       Category of the phase.
+     * @param name           Name of the phase.
+     * @param threadId       Id of the thread running the phase.
+     * @param threadName     Name of the thread running the phase.
+     * @param startNanos     Start of the phase in nanoseconds since the profiler was created.
+     * @param durationNanos  Duration of the phase in nanoseconds.
+     * @param allocatedBytes Bytes allocated by the thread during the phase, or -1 if not supported.
+     */
+    public record Record(String category, String name, long threadId, String threadName, long startNanos,
+                         long durationNanos, long allocatedBytes) {
+    }
+}
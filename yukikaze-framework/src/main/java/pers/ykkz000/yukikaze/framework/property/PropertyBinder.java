@@ -0,0 +1,172 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.property;
+
+import pers.ykkz000.yukikaze.framework.route.VariableType;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Binder converting properties to the types of the parameters and record components they are injected into, with
+ * the parsers of {@link VariableType}. Errors name the key of the property.
+ *
+ * @author ykkz000
+ */
+public final class PropertyBinder {
+    private PropertyBinder() {
+    }
+
+    /**
+     * Bind a property.
+     *
+     * @param properties   Properties.
+     * @param key          Key of the property.
+     * @param defaultValue Value used if the property is absent or null, or null if the property is required. For a
+     *                     list it is split at commas.
+     * @param type         Type to convert to, a type supported by {@link VariableType} or a {@link List} of them.
+     * @param genericType  Generic type to convert to, giving the element type of a list.
+     * @return Converted value.
+     * @throws IllegalStateException Thrown if the type is not supported or the property is missing or invalid.
+     */
+    public static Object bindProperty(PropertyStore properties, String key, String defaultValue, Class<?> type, Type genericType) throws IllegalStateException {
+        Object value = bind(properties, key, type, genericType);
+        if (value != null) {
+            return value;
+        }
+        if (defaultValue == null) {
+            throw new IllegalStateException("Missing property " + key);
+        }
+        if (type == List.class) {
+            List<Object> elements = new ArrayList<>();
+            if (!defaultValue.isEmpty()) {
+                for (String element : defaultValue.split(",")) {
+                    elements.add(element.trim());
+                }
+            }
+            return convertList(key, elements, genericType);
+        }
+        return convert(key, defaultValue, variableType(key, type));
+    }
+
+    /**
+     * Bind the properties under a prefix to a record.
+     *
+     * @param properties  Properties.
+     * @param prefix      Prefix of the properties without the trailing dot.
+     * @param recordClass Class of the record.
+     * @return The record.
+     * @throws IllegalStateException Thrown if the class is not a record, a component has an unsupported type, a
+     *                               property is invalid or the record constructor fails.
+     * @see pers.ykkz000.yukikaze.framework.annotation.ConfigurationProperties
+     */
+    public static Object bindRecord(PropertyStore properties, String prefix, Class<?> recordClass) throws IllegalStateException {
+        if (!recordClass.isRecord()) {
+            throw new IllegalStateException("Properties " + prefix + " must be bound to a record: " + recordClass.getName());
+        }
+        RecordComponent[] components = recordClass.getRecordComponents();
+        Class<?>[] types = new Class<?>[components.length];
+        Object[] args = new Object[components.length];
+        String base = prefix.isEmpty() ? "" : prefix + ".";
+        for (int i = 0; i < components.length; i++) {
+            RecordComponent component = components[i];
+            Class<?> type = component.getType();
+            types[i] = type;
+            String kebabKey = base + toKebabCase(component.getName());
+            if (type.isRecord()) {
+                String key = properties.getKeys(kebabKey).isEmpty() ? base + component.getName() : kebabKey;
+                args[i] = properties.getKeys(key).isEmpty() ? null : bindRecord(properties, key, type);
+            } else {
+                String key = properties.contains(kebabKey) ? kebabKey : base + component.getName();
+                args[i] = bind(properties, key, type, component.getGenericType());
+                if (args[i] == null && type.isPrimitive()) {
+                    throw new IllegalStateException("Missing property " + key);
+                }
+            }
+        }
+        try {
+            Constructor<?> constructor = recordClass.getDeclaredConstructor(types);
+            constructor.setAccessible(true);
+            return constructor.newInstance(args);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Failed to bind properties " + prefix + " to " + recordClass.getName(), e.getCause());
+        } catch (ReflectiveOperationException | InaccessibleObjectException e) {
+            throw new IllegalStateException("Failed to bind properties " + prefix + " to " + recordClass.getName(), e);
+        }
+    }
+
+    /**
+     * Bind a property, returning null if it is absent or null.
+     */
+    private static Object bind(PropertyStore properties, String key, Class<?> type, Type genericType) {
+        if (type == List.class) {
+            return properties.get(key) == null ? null : convertList(key, properties.getList(key), genericType);
+        }
+        VariableType variableType = variableType(key, type);
+        String value = properties.getString(key);
+        return value == null ? null : convert(key, value, variableType);
+    }
+
+    private static List<Object> convertList(String key, List<Object> elements, Type genericType) {
+        VariableType variableType = VariableType.STRING;
+        if (genericType instanceof ParameterizedType parameterizedType && parameterizedType.getActualTypeArguments()[0] instanceof Class<?> elementType) {
+            variableType = variableType(key, elementType);
+        }
+        List<Object> list = new ArrayList<>(elements.size());
+        for (Object element : elements) {
+            list.add(element == null ? null : convert(key, element.toString(), variableType));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    private static Object convert(String key, String value, VariableType variableType) {
+        try {
+            return variableType.getParser().parse(value);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalStateException("Invalid value of property " + key + ": " + value, e);
+        }
+    }
+
+    private static VariableType variableType(String key, Class<?> type) {
+        VariableType variableType = VariableType.of(type);
+        if (variableType == null) {
+            throw new IllegalStateException("Unsupported type of property " + key + ": " + type.getName());
+        }
+        return variableType;
+    }
+
+    private static String toKebabCase(String name) {
+        StringBuilder builder = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                builder.append('-').append(Character.toLowerCase(c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,437 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.property;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Immutable store of the properties of an application. Keys are kept sorted, so the properties under a prefix form
+ * a contiguous range, and are indexed by a hash map for lookups; reads take no lock. Values keep the types they
+ * were loaded with: integers and floating point numbers are stored unboxed and read by the primitive getters
+ * without parsing, lists are kept as lists, and only values given as strings are parsed when read as another type.
+ *
+ * @author ykkz000
+ */
+public final class PropertyStore {
+    public static final PropertyStore EMPTY = new Builder().build();
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte LIST = 5;
+    private final String[] keys;
+    private final byte[] kinds;
+    private final long[] primitives;
+    private final Object[] objects;
+    private final Map<String, Integer> index;
+    private final String prefix;
+
+    private PropertyStore(String prefix, String[] keys, byte[] kinds, long[] primitives, Object[] objects) {
+        this.prefix = prefix;
+        this.keys = keys;
+        this.kinds = kinds;
+        this.primitives = primitives;
+        this.objects = objects;
+        Map<String, Integer> index = new HashMap<>(keys.length * 2);
+        for (int i = 0; i < keys.length; i++) {
+            index.put(keys[i], i);
+        }
+        this.index = index;
+    }
+
+    /**
+     * Create a builder.
+     *
+     * @return Builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the number of properties.
+     *
+     * @return Number of properties.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Get all keys.
+     *
+     * @return Sorted keys.
+     */
+    public List<String> getKeys() {
+        return Collections.unmodifiableList(Arrays.asList(keys));
+    }
+
+    /**
+     * Check whether a property is defined, possibly with a null value.
+     *
+     * @param key Key of the property.
+     * @return True if the property is defined.
+     */
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Get a property with its loaded type.
+     *
+     * @param key Key of the property.
+     * @return A {@link String}, {@link Long}, {@link Double}, {@link Boolean} or unmodifiable {@link List}, or null
+     * if absent.
+     */
+    public Object get(String key) {
+        Integer i = index.get(key);
+        return i == null ? null : valueAt(i);
+    }
+
+    /**
+     * Get a property as string. Numbers and booleans are formatted, lists are formatted by {@link List#toString()}.
+     *
+     * @param key Key of the property.
+     * @return Value of the property, or null if absent.
+     */
+    public String getString(String key) {
+        Object value = get(key);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Get a property as string.
+     *
+     * @param key          Key of the property.
+     * @param defaultValue Value returned if the property is absent or null.
+     * @return Value of the property.
+     * @see #getString(String)
+     */
+    public String getString(String key, String defaultValue) {
+        String value = getString(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Get a property as int.
+     *
+     * @param key          Key of the property.
+     * @param defaultValue Value returned if the property is absent or null.
+     * @return Value of the property.
+     * @throws IllegalArgumentException Thrown if the value is not an int, naming the key.
+     */
+    public int getInt(String key, int defaultValue) throws IllegalArgumentException {
+        Integer i = index.get(key);
+        if (i == null || kinds[i] == NULL) {
+            return defaultValue;
+        }
+        long value = getLong(key, defaultValue);
+        if (value != (int) value) {
+            throw invalid(key, value, null);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Get a property as long.
+     *
+     * @param key          Key of the property.
+     * @param defaultValue Value returned if the property is absent or null.
+     * @return Value of the property.
+     * @throws IllegalArgumentException Thrown if the value is not an integer, naming the key.
+     */
+    public long getLong(String key, long defaultValue) throws IllegalArgumentException {
+        Integer i = index.get(key);
+        if (i == null) {
+            return defaultValue;
+        }
+        return switch (kinds[i]) {
+            case NULL -> defaultValue;
+            case LONG -> primitives[i];
+            case STRING -> {
+                try {
+                    yield Long.parseLong(((String) objects[i]).trim());
+                } catch (NumberFormatException e) {
+                    throw invalid(key, objects[i], e);
+                }
+            }
+            default -> throw invalid(key, valueAt(i), null);
+        };
+    }
+
+    /**
+     * Get a property as double. Integer values are converted.
+     *
+     * @param key          Key of the property.
+     * @param defaultValue Value returned if the property is absent or null.
+     * @return Value of the property.
+     * @throws IllegalArgumentException Thrown if the value is not a number, naming the key.
+     */
+    public double getDouble(String key, double defaultValue) throws IllegalArgumentException {
+        Integer i = index.get(key);
+        if (i == null) {
+            return defaultValue;
+        }
+        return switch (kinds[i]) {
+            case NULL -> defaultValue;
+            case DOUBLE -> Double.longBitsToDouble(primitives[i]);
+            case LONG -> primitives[i];
+            case STRING -> {
+                try {
+                    yield Double.parseDouble(((String) objects[i]).trim());
+                } catch (NumberFormatException e) {
+                    throw invalid(key, objects[i], e);
+                }
+            }
+            default -> throw invalid(key, valueAt(i), null);
+        };
+    }
+
+    /**
+     * Get a property as boolean. Strings are accepted if they are "true" or "false", ignoring case.
+     *
+     * @param key          Key of the property.
+     * @param defaultValue Value returned if the property is absent or null.
+     * @return Value of the property.
+     * @throws IllegalArgumentException Thrown if the value is not a boolean, naming the key.
+     */
+    public boolean getBoolean(String key, boolean defaultValue) throws IllegalArgumentException {
+        Integer i = index.get(key);
+        if (i == null) {
+            return defaultValue;
+        }
+        return switch (kinds[i]) {
+            case NULL -> defaultValue;
+            case BOOLEAN -> primitives[i] != 0;
+            case STRING -> {
+                String value = ((String) objects[i]).trim();
+                if (value.equalsIgnoreCase("true")) {
+                    yield true;
+                }
+                if (value.equalsIgnoreCase("false")) {
+                    yield false;
+                }
+                throw invalid(key, value, null);
+            }
+            default -> throw invalid(key, valueAt(i), null);
+        };
+    }
+
+    /**
+     * Get a property as list. A scalar value is read as a list of one element.
+     *
+     * @param key Key of the property.
+     * @return Unmodifiable list, empty if the property is absent or null.
+     */
+    public List<Object> getList(String key) {
+        Object value = get(key);
+        if (value == null) {
+            return List.of();
+        }
+        if (value instanceof List<?> list) {
+            return Collections.unmodifiableList(list);
+        }
+        return List.of(value);
+    }
+
+    /**
+     * Get a property as list of strings.
+     *
+     * @param key Key of the property.
+     * @return Unmodifiable list of the elements formatted as strings, empty if the property is absent or null.
+     * @see #getList(String)
+     */
+    public List<String> getStringList(String key) {
+        List<Object> list = getList(key);
+        List<String> strings = new ArrayList<>(list.size());
+        for (Object element : list) {
+            strings.add(element == null ? null : element.toString());
+        }
+        return Collections.unmodifiableList(strings);
+    }
+
+    /**
+     * Get the keys under a prefix, found by a range search over the sorted keys.
+     *
+     * @param prefix Prefix without the trailing dot, for example {@code a.b} for the keys {@code a.b.*}.
+     * @return Sorted keys under the prefix.
+     */
+    public List<String> getKeys(String prefix) {
+        int from = lowerBound(prefix + ".");
+        int to = lowerBound(prefix + "/");
+        return Collections.unmodifiableList(Arrays.asList(keys).subList(from, to));
+    }
+
+    /**
+     * Get the properties under a prefix as a store of their own, with the prefix removed from their keys. Errors
+     * reported by the returned store still name the full keys.
+     *
+     * @param prefix Prefix without the trailing dot, for example {@code a.b} for the keys {@code a.b.*}.
+     * @return Store of the properties under the prefix.
+     */
+    public PropertyStore subtree(String prefix) {
+        int from = lowerBound(prefix + ".");
+        int to = lowerBound(prefix + "/");
+        int strip = prefix.length() + 1;
+        String[] subKeys = new String[to - from];
+        for (int i = from; i < to; i++) {
+            subKeys[i - from] = keys[i].substring(strip);
+        }
+        return new PropertyStore(this.prefix + prefix + ".", subKeys, Arrays.copyOfRange(kinds, from, to), Arrays.copyOfRange(primitives, from, to), Arrays.copyOfRange(objects, from, to));
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        for (int i = 0; i < keys.length; i++) {
+            joiner.add(keys[i] + "=" + valueAt(i));
+        }
+        return joiner.toString();
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private Object valueAt(int i) {
+        return switch (kinds[i]) {
+            case LONG -> primitives[i];
+            case DOUBLE -> Double.longBitsToDouble(primitives[i]);
+            case BOOLEAN -> primitives[i] != 0;
+            default -> objects[i];
+        };
+    }
+
+    private IllegalArgumentException invalid(String key, Object value, Throwable cause) {
+        return new IllegalArgumentException("Invalid value of property " + prefix + key + ": " + value, cause);
+    }
+
+    /**
+     * Builder of a {@link PropertyStore}. Putting a key again replaces its value, so later sources override
+     * earlier ones.
+     */
+    public static class Builder {
+        private final Map<String, Object> values = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Put a property. Integers are stored as {@link Long} and floating point numbers as {@link Double}; lists
+         * are copied recursively, and other types, including integers too big for a long, are stored as strings.
+         *
+         * @param key   Key of the property.
+         * @param value Value of the property, may be null.
+         * @return This builder.
+         */
+        public Builder put(String key, Object value) {
+            values.put(key, normalize(value));
+            return this;
+        }
+
+        /**
+         * Put all properties of a store.
+         *
+         * @param store Store.
+         * @return This builder.
+         */
+        public Builder putAll(PropertyStore store) {
+            for (int i = 0; i < store.keys.length; i++) {
+                values.put(store.keys[i], store.valueAt(i));
+            }
+            return this;
+        }
+
+        /**
+         * Build the store.
+         *
+         * @return Immutable store.
+         */
+        public PropertyStore build() {
+            String[] keys = values.keySet().toArray(new String[0]);
+            Arrays.sort(keys);
+            byte[] kinds = new byte[keys.length];
+            long[] primitives = new long[keys.length];
+            Object[] objects = new Object[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                Object value = values.get(keys[i]);
+                if (value == null) {
+                    kinds[i] = NULL;
+                } else if (value instanceof Long l) {
+                    kinds[i] = LONG;
+                    primitives[i] = l;
+                } else if (value instanceof Double d) {
+                    kinds[i] = DOUBLE;
+                    primitives[i] = Double.doubleToRawLongBits(d);
+                } else if (value instanceof Boolean b) {
+                    kinds[i] = BOOLEAN;
+                    primitives[i] = b ? 1 : 0;
+                } else if (value instanceof List) {
+                    kinds[i] = LIST;
+                    objects[i] = value;
+                } else {
+                    kinds[i] = STRING;
+                    objects[i] = value.toString();
+                }
+            }
+            return new PropertyStore("", keys, kinds, primitives, objects);
+        }
+
+        private static Object normalize(Object value) {
+            if (value == null || value instanceof String || value instanceof Long || value instanceof Double || value instanceof Boolean) {
+                return value;
+            }
+            if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return ((Number) value).longValue();
+            }
+            if (value instanceof Float f) {
+                return f.doubleValue();
+            }
+            if (value instanceof BigInteger b && b.bitLength() < Long.SIZE) {
+                return b.longValue();
+            }
+            if (value instanceof Collection<?> collection) {
+                List<Object> list = new ArrayList<>(collection.size());
+                for (Object element : collection) {
+                    list.add(normalize(element));
+                }
+                return Collections.unmodifiableList(list);
+            }
+            if (value instanceof Map<?, ?> map) {
+                Map<String, Object> copy = new LinkedHashMap<>();
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    copy.put(String.valueOf(entry.getKey()), normalize(entry.getValue()));
+                }
+                return Collections.unmodifiableMap(copy);
+            }
+            return value.toString();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.route;
+
+import pers.ykkz000.yukikaze.framework.exception.ResponseErrorException;
+
+/**
+ * Admission control of a handler: the global concurrency limit, its own concurrency limit and its rate limit, checked
+ * in that order so a call rejected for concurrency does not use up the rate budget. Rejections are shared exceptions
+ * without stack traces, so shedding load stays cheap.
+ *
+ * @author ykkz000
+ */
+final class AdmissionControl {
+    private static final ResponseErrorException TOO_MANY_REQUESTS = new ResponseErrorException(429, "Too many requests", null, false, false);
+    private static final ResponseErrorException SERVER_BUSY = new ResponseErrorException(503, "Server busy", null, false, false);
+    private final TokenBucket rateLimit;
+    private final ConcurrencyLimiter globalLimit;
+    private final ConcurrencyLimiter concurrencyLimit;
+
+    private AdmissionControl(TokenBucket rateLimit, ConcurrencyLimiter globalLimit, ConcurrencyLimiter concurrencyLimit) {
+        this.rateLimit = rateLimit;
+        this.globalLimit = globalLimit;
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    /**
+     * @return The admission control, or null if there is no limit.
+     */
+    static AdmissionControl of(TokenBucket rateLimit, ConcurrencyLimiter globalLimit, ConcurrencyLimiter concurrencyLimit) {
+        if (rateLimit == null && globalLimit == null && concurrencyLimit == null) {
+            return null;
+        }
+        return new AdmissionControl(rateLimit, globalLimit, concurrencyLimit);
+    }
+
+    /**
+     * Admit a call, which must be followed by {@link #release}.
+     *
+     * @throws ResponseErrorException With status 429 if over the rate limit or 503 if over a concurrency limit.
+     */
+    void acquire() throws ResponseErrorException {
+        if (globalLimit != null && !globalLimit.tryAcquire()) {
+            throw SERVER_BUSY;
+        }
+        if (concurrencyLimit != null && !concurrencyLimit.tryAcquire()) {
+            if (globalLimit != null) {
+                globalLimit.cancel();
+            }
+            throw SERVER_BUSY;
+        }
+        if (rateLimit != null && !rateLimit.tryAcquire()) {
+            if (concurrencyLimit != null) {
+                concurrencyLimit.cancel();
+            }
+            if (globalLimit != null) {
+                globalLimit.cancel();
+            }
+            throw TOO_MANY_REQUESTS;
+        }
+    }
+
+    /**
+     * Release an admitted call.
+     *
+     * @param latencyNanos Latency of the call.
+     */
+    void release(long latencyNanos) {
+        if (concurrencyLimit != null) {
+            concurrencyLimit.release(latencyNanos);
+        }
+        if (globalLimit != null) {
+            globalLimit.release(latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.framework.route;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Arguments given as absolute offsets into a byte buffer. Names and numbers are read as US-ASCII, string values are
+ * decoded as UTF-8. The position and limit of the buffer are not changed.
+ *
+ * @author ykkz000
+ */
+public class ByteBufferArguments extends SliceArguments {
+    private final AsciiView view = new AsciiView();
+
+    public ByteBufferArguments(ByteBuffer source) {
+        view.buffer = source;
+    }
+
+    /**
+     * Remove all arguments and read following ones from another buffer.
+     *
+     * @param source Byte buffer.
+     */
+    public void reset(ByteBuffer source) {
+        clear();
+        view.buffer = source;
+    }
+
+    @Override
+    protected CharSequence chars() {
+        return view;
+    }
+
+    @Override
+    protected String decode(int start, int end) {
+        ByteBuffer buffer = view.buffer;
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class AsciiView implements CharSequence {
+        private ByteBuffer buffer;
+
+        @Override
+        public int length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.framework.route;
+
+/**
+ * Arguments given as offsets into a character sequence.
+ *
+ * @author ykkz000
+ */
+public class CharSequenceArguments extends SliceArguments {
+    private CharSequence source;
+
+    public CharSequenceArguments(CharSequence source) {
+        this.source = source;
+    }
+
+    /**
+     * Remove all arguments and read following ones from another character sequence.
+     *
+     * @param source Character sequence.
+     */
+    public void reset(CharSequence source) {
+        clear();
+        this.source = source;
+    }
+
+    @Override
+    protected CharSequence chars() {
+        return source;
+    }
+
+    @Override
+    protected String decode(int start, int end) {
+        return source.subSequence(start, end).toString();
+    }
+}
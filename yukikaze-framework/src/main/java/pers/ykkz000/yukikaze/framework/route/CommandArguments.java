@@ -0,0 +1,84 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.framework.route;
+
+import java.util.Map;
+
+/**
+ * Arguments of a command. The primitive getters follow the parse methods of the boxed types, so implementations
+ * backed by raw buffers can parse values without creating strings.
+ *
+ * @author ykkz000
+ */
+@FunctionalInterface
+public interface CommandArguments {
+    /**
+     * Wrap a map of arguments.
+     *
+     * @param args Map of arguments.
+     * @return Arguments backed by the map.
+     */
+    static CommandArguments of(Map<String, String> args) {
+        return args::get;
+    }
+
+    /**
+     * Get an argument as string.
+     *
+     * @param name Name of the argument.
+     * @return Value of the argument, or null if absent.
+     */
+    String getString(String name);
+
+    default byte getByte(String name) throws NumberFormatException {
+        return Byte.parseByte(getString(name));
+    }
+
+    default char getChar(String name) throws IllegalArgumentException {
+        String value = getString(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing character argument: " + name);
+        }
+        return value.charAt(0);
+    }
+
+    default short getShort(String name) throws NumberFormatException {
+        return Short.parseShort(getString(name));
+    }
+
+    default int getInt(String name) throws NumberFormatException {
+        return Integer.parseInt(getString(name));
+    }
+
+    default long getLong(String name) throws NumberFormatException {
+        return Long.parseLong(getString(name));
+    }
+
+    default float getFloat(String name) throws NumberFormatException {
+        return Float.parseFloat(getString(name));
+    }
+
+    default double getDouble(String name) throws NumberFormatException {
+        return Double.parseDouble(getString(name));
+    }
+
+    default boolean getBoolean(String name) {
+        return Boolean.parseBoolean(getString(name));
+    }
+}
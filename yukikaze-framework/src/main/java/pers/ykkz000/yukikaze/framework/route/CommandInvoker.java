@@ -0,0 +1,36 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.framework.route;
+
+/**
+ * Invoker of a command handler.
+ *
+ * @author ykkz000
+ */
+@FunctionalInterface
+public interface CommandInvoker {
+    /**
+     * Parse the arguments and invoke the handler.
+     *
+     * @param args Arguments of the command.
+     * @return Result of the handler, with primitive results boxed.
+     * @throws Exception If failed to parse the arguments or the handler throws.
+     */
+    Object invoke(CommandArguments args) throws Exception;
+}
@@ -0,0 +1,264 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.framework.route;
+
+import org.apache.commons.math3.util.Pair;
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.janino.SimpleCompiler;
+import org.slf4j.LoggerFactory;
+import pers.ykkz000.yukikaze.framework.exception.ResponseErrorException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Map.entry;
+
+/**
+ * Factory of command invokers.
+ * Handlers of public methods in public classes are compiled with Janino into invokers that read primitive arguments
+ * through the typed getters of {@link CommandArguments} and call the method directly; other handlers are invoked by reflection.
+ *
+ * @author ykkz000
+ */
+public class CommandInvokerFactory {
+    private static final String INVOKER_PACKAGE = "pers.ykkz000.yukikaze.framework.route.generated";
+    private static final AtomicInteger INVOKER_COUNT = new AtomicInteger();
+    private static final Map<Class<?>, String> PARSE_EXPRESSIONS = Map.ofEntries(
+            entry(String.class, "String.valueOf((Object) args.getString(%s))"),
+            entry(byte.class, "args.getByte(%s)"),
+            entry(Byte.class, "Byte.valueOf(args.getByte(%s))"),
+            entry(char.class, "args.getChar(%s)"),
+            entry(Character.class, "Character.valueOf(args.getChar(%s))"),
+            entry(short.class, "args.getShort(%s)"),
+            entry(Short.class, "Short.valueOf(args.getShort(%s))"),
+            entry(int.class, "args.getInt(%s)"),
+            entry(Integer.class, "Integer.valueOf(args.getInt(%s))"),
+            entry(long.class, "args.getLong(%s)"),
+            entry(Long.class, "Long.valueOf(args.getLong(%s))"),
+            entry(float.class, "args.getFloat(%s)"),
+            entry(Float.class, "Float.valueOf(args.getFloat(%s))"),
+            entry(double.class, "args.getDouble(%s)"),
+            entry(Double.class, "Double.valueOf(args.getDouble(%s))"),
+            entry(boolean.class, "args.getBoolean(%s)"),
+            entry(Boolean.class, "Boolean.valueOf(args.getBoolean(%s))")
+    );
+
+    /**
+     * Create an invoker for a handler.
+     *
+     * @param instance      Instance of the handler.
+     * @param method        Method of the handler.
+     * @param variableTypes Names and types of the parameters.
+     * @return Invoker of the handler.
+     */
+    public static CommandInvoker create(Object instance, Method method, List<Pair<String, VariableType>> variableTypes) {
+        return create(List.of(new Handler(instance, method, variableTypes))).get(0);
+    }
+
+    /**
+     * Create the invokers of a batch of handlers, such as the handlers of one controller.
+     * The compilable handlers sharing a class loader are compiled in one compilation unit and class loader, with one
+     * invoker class per distinct method and parameter names. If the batch fails to compile, each handler is compiled on
+     * its own and falls back to reflection if it still fails.
+     *
+     * @param handlers Handlers to create invokers for.
+     * @return Invokers of the handlers, in the same order.
+     */
+    public static List<CommandInvoker> create(List<Handler> handlers) {
+        CommandInvoker[] invokers = new CommandInvoker[handlers.size()];
+        Map<ClassLoader, List<Integer>> batches = new LinkedHashMap<>();
+        for (int i = 0; i < handlers.size(); i++) {
+            Handler handler = handlers.get(i);
+            if (isCompilable(handler.method())) {
+                batches.computeIfAbsent(handler.method().getDeclaringClass().getClassLoader(), loader -> new ArrayList<>()).add(i);
+            } else {
+                invokers[i] = reflective(handler.instance(), handler.method(), handler.variableTypes());
+            }
+        }
+        for (Map.Entry<ClassLoader, List<Integer>> batch : batches.entrySet()) {
+            try {
+                compile(batch.getKey(), handlers, batch.getValue(), invokers);
+            } catch (CompileException | ReflectiveOperationException | LinkageError e) {
+                LoggerFactory.getLogger(CommandInvokerFactory.class).debug("Failed to compile invokers in batch, compile them one by one", e);
+                for (int i : batch.getValue()) {
+                    Handler handler = handlers.get(i);
+                    try {
+                        compile(batch.getKey(), handlers, List.of(i), invokers);
+                    } catch (CompileException | ReflectiveOperationException | LinkageError ex) {
+                        LoggerFactory.getLogger(CommandInvokerFactory.class).debug("Failed to compile invoker for {}, fall back to reflection", handler.method(), ex);
+                        invokers[i] = reflective(handler.instance(), handler.method(), handler.variableTypes());
+                    }
+                }
+            }
+        }
+        return Arrays.asList(invokers);
+    }
+
+    private static boolean isCompilable(Method method) {
+        if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())) {
+            return false;
+        }
+        for (Class<?> clazz = method.getDeclaringClass(); clazz != null; clazz = clazz.getEnclosingClass()) {
+            if (!Modifier.isPublic(clazz.getModifiers()) || clazz.getCanonicalName() == null) {
+                return false;
+            }
+        }
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            if (!PARSE_EXPRESSIONS.containsKey(parameterType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compile the invokers of the handlers at the given indices as member classes of one generated class.
+     */
+    private static void compile(ClassLoader parent, List<Handler> handlers, List<Integer> indices, CommandInvoker[] invokers)
+            throws CompileException, ReflectiveOperationException {
+        String outerName = "CommandInvokers" + INVOKER_COUNT.incrementAndGet();
+        StringBuilder source = new StringBuilder()
+                .append("package ").append(INVOKER_PACKAGE).append(";\n")
+                .append("public final class ").append(outerName).append(" {\n");
+        Map<Pair<Method, List<String>>, String> invokerNames = new HashMap<>();
+        String[] classNames = new String[indices.size()];
+        for (int i = 0; i < indices.size(); i++) {
+            Handler handler = handlers.get(indices.get(i));
+            Pair<Method, List<String>> key = new Pair<>(handler.method(), handler.variableTypes().stream().map(Pair::getFirst).toList());
+            String simpleName = invokerNames.get(key);
+            if (simpleName == null) {
+                simpleName = "Invoker" + invokerNames.size();
+                invokerNames.put(key, simpleName);
+                appendInvoker(source, simpleName, handler.method(), handler.variableTypes());
+            }
+            classNames[i] = INVOKER_PACKAGE + "." + outerName + "$" + simpleName;
+        }
+        source.append("}\n");
+
+        SimpleCompiler compiler = new SimpleCompiler();
+        compiler.setParentClassLoader(parent);
+        compiler.cook(source.toString());
+        ClassLoader loader = compiler.getClassLoader();
+        CommandInvoker[] compiled = new CommandInvoker[indices.size()];
+        for (int i = 0; i < indices.size(); i++) {
+            compiled[i] = (CommandInvoker) loader.loadClass(classNames[i]).getConstructor(Object.class)
+                    .newInstance(handlers.get(indices.get(i)).instance());
+        }
+        for (int i = 0; i < indices.size(); i++) {
+            invokers[indices.get(i)] = compiled[i];
+        }
+    }
+
+    private static void appendInvoker(StringBuilder source, String simpleName, Method method, List<Pair<String, VariableType>> variableTypes) {
+        String targetName = method.getDeclaringClass().getCanonicalName();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        source.append("    public static final class ").append(simpleName).append(" implements ").append(CommandInvoker.class.getCanonicalName()).append(" {\n")
+                .append("        private final ").append(targetName).append(" instance;\n")
+                .append("        public ").append(simpleName).append("(Object instance) {\n")
+                .append("            this.instance = (").append(targetName).append(") instance;\n")
+                .append("        }\n")
+                .append("        public Object invoke(").append(CommandArguments.class.getCanonicalName()).append(" args) throws Exception {\n");
+        StringBuilder arguments = new StringBuilder();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            source.append("            ").append(parameterTypes[i].getCanonicalName()).append(" p").append(i)
+                    .append(" = ").append(defaultValue(parameterTypes[i])).append(";\n");
+            arguments.append(i == 0 ? "" : ", ").append('p').append(i);
+        }
+        source.append("            try {\n");
+        for (int i = 0; i < parameterTypes.length; i++) {
+            source.append("                p").append(i).append(" = ")
+                    .append(String.format(PARSE_EXPRESSIONS.get(parameterTypes[i]), quote(variableTypes.get(i).getFirst()))).append(";\n");
+        }
+        source.append("            } catch (IllegalArgumentException e) {\n")
+                .append("                throw new ").append(ResponseErrorException.class.getCanonicalName()).append("(400, \"Invalid request\");\n")
+                .append("            }\n");
+        String call = "instance." + method.getName() + "(" + arguments + ")";
+        if (method.getReturnType() == void.class) {
+            source.append("            ").append(call).append(";\n            return null;\n");
+        } else {
+            source.append("            return ").append(call).append(";\n");
+        }
+        source.append("        }\n    }\n");
+    }
+
+    private static CommandInvoker reflective(Object instance, Method method, List<Pair<String, VariableType>> variableTypes) {
+        return args -> {
+            Object[] params = new Object[variableTypes.size()];
+            for (int i = 0; i < variableTypes.size(); i++) {
+                VariableType type = variableTypes.get(i).getSecond();
+                try {
+                    params[i] = type.getParser().parse(args.getString(variableTypes.get(i).getFirst()));
+                } catch (IllegalArgumentException e) {
+                    throw new ResponseErrorException(400, "Invalid request");
+                }
+            }
+            try {
+                return method.invoke(instance, params);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw new ResponseErrorException(500, e.getCause().getMessage(), e.getCause());
+            }
+        };
+    }
+
+    private static String defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return "false";
+        } else if (type == char.class) {
+            return "'\\0'";
+        } else if (type.isPrimitive()) {
+            return "0";
+        }
+        return "null";
+    }
+
+    private static String quote(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * A handler to create an invoker for.
+     *
+     * @param instance      Instance of the handler.
+     * @param method        Method of the handler.
+     * @param variableTypes Names and types of the parameters.
+     */
+    public record Handler(Object instance, Method method, List<Pair<String, VariableType>> variableTypes) {
+    }
+}
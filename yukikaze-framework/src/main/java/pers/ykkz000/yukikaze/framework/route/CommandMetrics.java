@@ -0,0 +1,130 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.route;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the handler of a command: number of calls, errors by status and latency. Errors are counted in a table
+ * indexed by status, so recording does not allocate once a status has been seen; statuses outside 100-599 are kept
+ * in a map instead.
+ *
+ * @author ykkz000
+ */
+public class CommandMetrics {
+    @Getter
+    private final String command;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 599;
+    private final AtomicReferenceArray<LongAdder> errorsByStatus = new AtomicReferenceArray<>(MAX_STATUS - MIN_STATUS + 1);
+    private final Map<Integer, LongAdder> errorsByOtherStatus = new ConcurrentHashMap<>();
+    @Getter
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public CommandMetrics(String command) {
+        this.command = command;
+    }
+
+    /**
+     * Record a successful call.
+     *
+     * @param nanos Latency in nanoseconds.
+     */
+    public void recordSuccess(long nanos) {
+        calls.increment();
+        latency.record(nanos);
+    }
+
+    /**
+     * Record a failed call.
+     *
+     * @param status Status of the error.
+     * @param nanos  Latency in nanoseconds.
+     */
+    public void recordError(int status, long nanos) {
+        calls.increment();
+        errors.increment();
+        counter(status).increment();
+        latency.record(nanos);
+    }
+
+    private LongAdder counter(int status) {
+        if (status < MIN_STATUS || status > MAX_STATUS) {
+            return errorsByOtherStatus.computeIfAbsent(status, key -> new LongAdder());
+        }
+        int index = status - MIN_STATUS;
+        LongAdder counter = errorsByStatus.get(index);
+        if (counter == null) {
+            LongAdder created = new LongAdder();
+            counter = errorsByStatus.compareAndExchange(index, null, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public Map<Integer, Long> getErrorsByStatus() {
+        Map<Integer, Long> result = new TreeMap<>();
+        for (int i = 0; i < errorsByStatus.length(); i++) {
+            LongAdder counter = errorsByStatus.get(i);
+            if (counter != null) {
+                result.put(MIN_STATUS + i, counter.sum());
+            }
+        }
+        errorsByOtherStatus.forEach((status, counter) -> result.put(status, counter.sum()));
+        return result;
+    }
+
+    /**
+     * Take a snapshot of the metrics.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(getCalls(), getErrors(), getErrorsByStatus(), latency.snapshot());
+    }
+
+    /**
+     * Snapshot of the metrics of a command.
+     *
+     * @param calls          Number of calls.
+     * @param errors         Number of failed calls.
+     * @param errorsByStatus Number of failed calls by status.
+     * @param latencyNanos   Latency of the calls in nanoseconds.
+     */
+    public record Snapshot(long calls, long errors, Map<Integer, Long> errorsByStatus,
+                           LatencyHistogram.Snapshot latencyNanos) {
+    }
+}
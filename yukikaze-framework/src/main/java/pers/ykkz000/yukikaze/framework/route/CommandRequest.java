@@ -0,0 +1,34 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.framework.route;
+
+import java.util.Map;
+
+/**
+ * Request of a command in a batch.
+ *
+ * @param command Command.
+ * @param args    Arguments of the command.
+ * @author ykkz000
+ */
+public record CommandRequest(String command, CommandArguments args) {
+    public CommandRequest(String command, Map<String, String> args) {
+        this(command, CommandArguments.of(args));
+    }
+}
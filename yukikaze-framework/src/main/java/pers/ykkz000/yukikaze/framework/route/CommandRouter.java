@@ -18,15 +18,37 @@
 
 package pers.ykkz000.yukikaze.framework.route;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import lombok.Getter;
+import lombok.Setter;
 import org.apache.commons.math3.util.Pair;
 import pers.ykkz000.yukikaze.framework.ApplicationContext;
+import pers.ykkz000.yukikaze.framework.annotation.Cacheable;
+import pers.ykkz000.yukikaze.framework.annotation.ConcurrencyLimit;
 import pers.ykkz000.yukikaze.framework.annotation.ParamVariable;
+import pers.ykkz000.yukikaze.framework.annotation.RateLimit;
 import pers.ykkz000.yukikaze.framework.exception.ResponseErrorException;
+import pers.ykkz000.yukikaze.framework.property.PropertyStore;
+import pers.ykkz000.yukikaze.framework.util.ThreadUtil;
 
-import java.lang.reflect.InvocationTargetException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Route the commands
@@ -34,85 +56,546 @@ import java.util.*;
  * @author ykkz000
  */
 public class CommandRouter {
+    /**
+     * Built-in command returning the snapshots of {@link #getMetrics()}.
+     */
+    public static final String METRICS_COMMAND = "__metrics";
+    /**
+     * Property of the maximum number of concurrent calls of all commands.
+     */
+    public static final String MAX_CONCURRENCY_PROPERTY = "yukikaze.command.max-concurrency";
+    private static final String COMMAND_PROPERTY_PREFIX = "yukikaze.command.";
+    private static final int[] NO_CAPTURES = new int[0];
+    private static final ThreadLocal<int[]> CAPTURES = ThreadLocal.withInitial(() -> new int[16]);
     private final ApplicationContext context;
-    private final Map<String, HandlerEntry> queryHandlers;
+    private final RouteTree<HandlerEntry> queryHandlers;
+    private final Map<String, CommandMetrics> metrics;
+    private final Map<String, ResultCache> caches;
+    private ConcurrencyLimiter globalLimit;
+    private boolean globalLimitResolved;
+    /**
+     * Executor of {@link #executeAsync} for handlers that do not return a {@link CompletionStage}.
+     */
+    @Getter
+    @Setter
+    private volatile Executor executor;
 
     public CommandRouter(ApplicationContext context) {
         this.context = context;
-        this.queryHandlers = new Hashtable<>();
+        this.queryHandlers = new RouteTree<>();
+        this.metrics = new ConcurrentHashMap<>();
+        this.caches = new ConcurrentHashMap<>();
+        this.executor = ThreadUtil.newPerTaskExecutor("yukikaze-command");
     }
 
     public String execute(String command, Map<String, String> args) throws ResponseErrorException {
-        HandlerEntry entry = queryHandlers.get(command);
-        if (entry == null) {
+        return execute(command, CommandArguments.of(args));
+    }
+
+    /**
+     * Execute a command whose arguments may be backed by a buffer, such as {@link CharSequenceArguments} or
+     * {@link ByteBufferArguments}.
+     *
+     * @param command Command.
+     * @param args    Arguments of the command.
+     * @return Result of the command.
+     * @throws ResponseErrorException If the command is not found or failed.
+     */
+    public String execute(String command, CommandArguments args) throws ResponseErrorException {
+        RouteTree.Route<HandlerEntry> route = find(command);
+        if (route == null) {
+            throw new ResponseErrorException(404, "Command not found");
+        }
+        HandlerEntry entry = route.value();
+        long start = System.nanoTime();
+        try {
+            CommandArguments boundArgs = bindPathVariables(route, command, captures(route), args);
+            List<Object> key = entry.cache() == null ? null : entry.cache().key(boundArgs);
+            String result = key == null
+                    ? entry.serialize(call(entry, boundArgs))
+                    : entry.cache().get(key, () -> entry.serialize(call(entry, boundArgs)));
+            entry.metrics().recordSuccess(System.nanoTime() - start);
+            return result;
+        } catch (ResponseErrorException e) {
+            entry.metrics().recordError(e.getStatus(), System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    public void execute(String command, Map<String, String> args, OutputStream out) throws ResponseErrorException {
+        execute(command, CommandArguments.of(args), out);
+    }
+
+    /**
+     * Execute a command and write the result to a stream, in the same form {@link #execute(String, CommandArguments)}
+     * returns it. {@link java.util.stream.Stream} and {@link java.util.Iterator} results are written as JSON arrays
+     * item by item while they are produced. The stream is flushed but not closed.
+     *
+     * @param command Command.
+     * @param args    Arguments of the command.
+     * @param out     Stream to write the result to.
+     * @throws ResponseErrorException If the command is not found or failed. Part of the result may already be
+     *                                written if it failed while writing.
+     */
+    public void execute(String command, CommandArguments args, OutputStream out) throws ResponseErrorException {
+        RouteTree.Route<HandlerEntry> route = find(command);
+        if (route == null) {
             throw new ResponseErrorException(404, "Command not found");
         }
+        HandlerEntry entry = route.value();
+        long start = System.nanoTime();
         try {
-            return entry.execute(context, args);
-        } catch (Exception e) {
+            entry.write(context, call(entry, bindPathVariables(route, command, captures(route), args)), out);
+            entry.metrics().recordSuccess(System.nanoTime() - start);
+        } catch (ResponseErrorException e) {
+            entry.metrics().recordError(e.getStatus(), System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * Execute a command and write the result to a channel.
+     *
+     * @see #execute(String, CommandArguments, OutputStream)
+     */
+    public void execute(String command, CommandArguments args, WritableByteChannel channel) throws ResponseErrorException {
+        execute(command, args, Channels.newOutputStream(channel));
+    }
+
+    public CompletableFuture<String> executeAsync(String command, Map<String, String> args) {
+        return executeAsync(command, CommandArguments.of(args));
+    }
+
+    /**
+     * Execute a command asynchronously. Handlers returning a {@link CompletionStage} are invoked on the calling
+     * thread and their stage is only mapped to the result; other handlers run on {@link #getExecutor()}.
+     * Arguments backed by a buffer must stay valid until the returned future completes.
+     *
+     * @param command Command.
+     * @param args    Arguments of the command.
+     * @return Future of the result, completed exceptionally with {@link ResponseErrorException} on failure.
+     */
+    public CompletableFuture<String> executeAsync(String command, CommandArguments args) {
+        RouteTree.Route<HandlerEntry> route = find(command);
+        if (route == null) {
+            return CompletableFuture.failedFuture(new ResponseErrorException(404, "Command not found"));
+        }
+        HandlerEntry entry = route.value();
+        CommandArguments boundArgs = bindPathVariables(route, command, captures(route), args);
+        List<Object> key = entry.cache() == null ? null : entry.cache().key(boundArgs);
+        if (key == null) {
+            return invokeAsyncAndSerialize(entry, boundArgs, true);
+        }
+        long start = System.nanoTime();
+        CompletableFuture<String> future = entry.cache().getAsync(key, () -> invokeAsyncAndSerialize(entry, boundArgs, false));
+        future.whenComplete((result, error) -> recordMetrics(entry, error, start));
+        return future;
+    }
+
+    /**
+     * Execute a command asynchronously like {@link #executeAsync(String, CommandArguments)}, but complete with the
+     * result of the handler instead of its serialized form, for transports that encode results themselves. Results
+     * of {@link pers.ykkz000.yukikaze.framework.annotation.Cacheable} handlers are not cached on this path, as the
+     * cache holds serialized results.
+     *
+     * @param command Command.
+     * @param args    Arguments of the command.
+     * @return Future of the result, completed exceptionally with {@link ResponseErrorException} on failure.
+     */
+    public CompletableFuture<Object> invokeAsync(String command, CommandArguments args) {
+        RouteTree.Route<HandlerEntry> route = find(command);
+        if (route == null) {
+            return CompletableFuture.failedFuture(new ResponseErrorException(404, "Command not found"));
+        }
+        return invokeAsync(route.value(), bindPathVariables(route, command, captures(route), args), true);
+    }
+
+    private CompletableFuture<String> invokeAsyncAndSerialize(HandlerEntry entry, CommandArguments args, boolean recordMetrics) {
+        return invokeAsync(entry, args, recordMetrics).thenApply(result -> {
+            try {
+                return entry.serialize(result);
+            } catch (ResponseErrorException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Execute a batch of commands. Each distinct command is resolved once and the commands run in parallel like
+     * {@link #executeAsync}. The results are written through one generator as a JSON array whose items are
+     * {"status":200,"result":...} or {"status":...,"error":"..."}, in the order of the requests. Each result is
+     * serialized into a buffer first, so a result failing to serialize is reported as an error item.
+     *
+     * @param requests Requests of the commands.
+     * @return JSON array of the results.
+     * @throws ResponseErrorException If the results cannot be serialized.
+     */
+    public String executeBatch(List<CommandRequest> requests) throws ResponseErrorException {
+        Map<String, Resolution> resolutions = new HashMap<>();
+        List<CompletableFuture<Object>> results = new ArrayList<>(requests.size());
+        List<ResultWriter> resultWriters = new ArrayList<>(requests.size());
+        for (CommandRequest request : requests) {
+            Resolution resolution = resolutions.computeIfAbsent(request.command(), command -> {
+                RouteTree.Route<HandlerEntry> route = find(command);
+                return new Resolution(route, route == null ? NO_CAPTURES : captures(route));
+            });
+            if (resolution.route() == null) {
+                results.add(CompletableFuture.failedFuture(new ResponseErrorException(404, "Command not found")));
+                resultWriters.add(null);
+            } else {
+                resultWriters.add(resolution.route().value().resultWriter());
+                results.add(invokeAsync(resolution.route().value(),
+                        bindPathVariables(resolution.route(), request.command(), resolution.captures(), request.args()), true));
+            }
+        }
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = context.getObjectMapper().createGenerator(writer)) {
+            generator.writeStartArray();
+            for (int i = 0; i < results.size(); i++) {
+                generator.writeStartObject();
+                try {
+                    Object value = results.get(i).join();
+                    TokenBuffer buffer = new TokenBuffer(generator.getCodec(), false);
+                    resultWriters.get(i).write(buffer, value);
+                    generator.writeNumberField("status", 200);
+                    generator.writeFieldName("result");
+                    buffer.serialize(generator);
+                } catch (IOException | RuntimeException e) {
+                    ResponseErrorException error = e instanceof IOException ? new ResponseErrorException(500, e.getMessage(), e) : toResponseError(e);
+                    generator.writeNumberField("status", error.getStatus());
+                    generator.writeStringField("error", error.getMessage());
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        } catch (IOException | RuntimeException e) {
             throw new ResponseErrorException(500, e.getMessage(), e);
         }
+        return writer.toString();
+    }
+
+    /**
+     * Invoke a handler asynchronously.
+     *
+     * @param recordMetrics False if the caller records the metrics of the call itself, as the cached path does so
+     *                      that hits are counted like loads.
+     */
+    private CompletableFuture<Object> invokeAsync(HandlerEntry entry, CommandArguments args, boolean recordMetrics) {
+        long start = System.nanoTime();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        if (recordMetrics) {
+            future.whenComplete((result, error) -> recordMetrics(entry, error, start));
+        }
+        AdmissionControl admission = entry.admission();
+        if (admission != null) {
+            try {
+                admission.acquire();
+            } catch (ResponseErrorException e) {
+                future.completeExceptionally(e);
+                return future;
+            }
+        }
+        if (entry.async()) {
+            CompletionStage<?> stage;
+            try {
+                stage = (CompletionStage<?>) entry.invoke(args);
+            } catch (Throwable e) {
+                release(admission, start);
+                future.completeExceptionally(toResponseError(e));
+                return future;
+            }
+            if (stage == null) {
+                release(admission, start);
+                future.complete(null);
+            } else {
+                stage.whenComplete((result, error) -> {
+                    release(admission, start);
+                    if (error != null) {
+                        future.completeExceptionally(toResponseError(error));
+                    } else {
+                        future.complete(result);
+                    }
+                });
+            }
+            return future;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(entry.invoke(args));
+                } catch (Throwable e) {
+                    future.completeExceptionally(toResponseError(e));
+                } finally {
+                    release(admission, start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release(admission, start);
+            future.completeExceptionally(new ResponseErrorException(503, "Command rejected", e));
+        }
+        return future;
+    }
+
+    private static void recordMetrics(HandlerEntry entry, Throwable error, long start) {
+        if (error == null) {
+            entry.metrics().recordSuccess(System.nanoTime() - start);
+        } else {
+            entry.metrics().recordError(toResponseError(error).getStatus(), System.nanoTime() - start);
+        }
+    }
+
+    private static void release(AdmissionControl admission, long start) {
+        if (admission != null) {
+            admission.release(System.nanoTime() - start);
+        }
     }
 
     public void addRoute(String command, Object instance, Method method) throws IllegalArgumentException {
+        addRoutes(instance, List.of(new Pair<>(command, method)));
+    }
+
+    /**
+     * Add the routes of one instance, such as the handlers of a controller, compiling their invokers together.
+     * All routes are checked before any of them is added.
+     *
+     * @param instance Instance of the handlers.
+     * @param routes   Commands and methods of the handlers.
+     * @throws IllegalArgumentException If a handler has a parameter without {@link ParamVariable} or of an invalid type,
+     *                                  or a placeholder of its command has no matching parameter.
+     */
+    public void addRoutes(Object instance, List<Pair<String, Method>> routes) throws IllegalArgumentException {
+        List<CommandInvokerFactory.Handler> handlers = new ArrayList<>(routes.size());
+        for (Pair<String, Method> route : routes) {
+            handlers.add(new CommandInvokerFactory.Handler(instance, route.getSecond(), getVariableTypes(route.getFirst(), route.getSecond())));
+        }
+        List<CommandInvoker> invokers = CommandInvokerFactory.create(handlers);
+        for (int i = 0; i < routes.size(); i++) {
+            String command = routes.get(i).getFirst();
+            Method method = routes.get(i).getSecond();
+            insertRoute(command, instance, method, handlers.get(i).variableTypes(), invokers.get(i), createAdmissionControl(command, method));
+        }
+    }
+
+    private static List<Pair<String, VariableType>> getVariableTypes(String command, Method method) throws IllegalArgumentException {
         List<Pair<String, VariableType>> variableTypes = new ArrayList<>();
         for (Parameter parameter : method.getParameters()) {
             if (!parameter.isAnnotationPresent(ParamVariable.class)) {
                 throw new IllegalArgumentException("Parameter " + parameter.getName() + " of method " + method.getName() + " has no @ParamVariable");
             }
-            Class<?> type = parameter.getType();
-            VariableType variableType;
-            if (type == String.class) {
-                variableType = VariableType.STRING;
-            } else if (type == byte.class || type == Byte.class) {
-                variableType = VariableType.BYTE;
-            } else if (type == char.class || type == Character.class) {
-                variableType = VariableType.CHARACTER;
-            } else if (type == int.class || type == Integer.class) {
-                variableType = VariableType.INTEGER;
-            } else if (type == short.class || type == Short.class) {
-                variableType = VariableType.SHORT;
-            } else if (type == long.class || type == Long.class) {
-                variableType = VariableType.LONG;
-            } else if (type == float.class || type == Float.class) {
-                variableType = VariableType.FLOAT;
-            } else if (type == double.class || type == Double.class) {
-                variableType = VariableType.DOUBLE;
-            } else if (type == boolean.class || type == Boolean.class) {
-                variableType = VariableType.BOOLEAN;
-            } else {
+            VariableType variableType = VariableType.of(parameter.getType());
+            if (variableType == null) {
                 throw new IllegalArgumentException("Parameter " + parameter.getName() + " of method " + method.getName() + " has invalid type");
             }
             variableTypes.add(new Pair<>(parameter.getAnnotation(ParamVariable.class).value(), variableType));
         }
-        queryHandlers.put(command, new HandlerEntry(instance, method, variableTypes));
+        for (String name : RouteTree.parameterNames(command)) {
+            if (variableTypes.stream().noneMatch(variableType -> variableType.getFirst().equals(name))) {
+                throw new IllegalArgumentException("Placeholder {" + name + "} of command " + command + " has no @ParamVariable in method " + method.getName());
+            }
+        }
+        return variableTypes;
     }
 
-    protected record HandlerEntry(Object instance, Method method, List<Pair<String, VariableType>> variableTypes) {
-        private String execute(ApplicationContext context, Map<String, String> args) throws ResponseErrorException {
-            Object[] params = new Object[variableTypes.size()];
-            for (int i = 0; i < variableTypes.size(); i++) {
-                VariableType type = variableTypes.get(i).getSecond();
-                try {
-                    params[i] = type.getParser().parse(args.get(variableTypes.get(i).getFirst()));
-                } catch (IllegalArgumentException e) {
-                    throw new ResponseErrorException(400, "Invalid request");
-                }
+    /**
+     * Build the admission control of a handler from its {@link RateLimit} and {@link ConcurrencyLimit} annotations,
+     * overridden by the properties "yukikaze.command.&lt;command&gt;.rate", ".burst", ".max-concurrency" and
+     * ".adaptive", plus the global limit "yukikaze.command.max-concurrency".
+     */
+    private AdmissionControl createAdmissionControl(String command, Method method) {
+        PropertyStore properties = context.getProperties();
+        String prefix = COMMAND_PROPERTY_PREFIX + command + ".";
+        RateLimit rateLimit = method.getAnnotation(RateLimit.class);
+        double rate = properties.getDouble(prefix + "rate", rateLimit == null ? 0 : rateLimit.value());
+        int burst = properties.getInt(prefix + "burst", rateLimit == null ? 1 : rateLimit.burst());
+        ConcurrencyLimit concurrencyLimit = method.getAnnotation(ConcurrencyLimit.class);
+        int maxConcurrency = properties.getInt(prefix + "max-concurrency", concurrencyLimit == null ? 0 : concurrencyLimit.value());
+        boolean adaptive = properties.getBoolean(prefix + "adaptive", concurrencyLimit != null && concurrencyLimit.adaptive());
+        return AdmissionControl.of(rate > 0 ? new TokenBucket(rate, burst) : null, getGlobalLimit(),
+                maxConcurrency > 0 ? new ConcurrencyLimiter(maxConcurrency, adaptive) : null);
+    }
+
+    /**
+     * Read the global limit when the first handler is added, as properties are loaded after the router is created.
+     */
+    private synchronized ConcurrencyLimiter getGlobalLimit() {
+        if (!globalLimitResolved) {
+            int maxConcurrency = context.getProperties().getInt(MAX_CONCURRENCY_PROPERTY, 0);
+            globalLimit = maxConcurrency > 0 ? new ConcurrencyLimiter(maxConcurrency, false) : null;
+            globalLimitResolved = true;
+        }
+        return globalLimit;
+    }
+
+
+    private void insertRoute(String command, Object instance, Method method, List<Pair<String, VariableType>> variableTypes, CommandInvoker invoker,
+                             AdmissionControl admission) {
+        CommandMetrics commandMetrics = new CommandMetrics(command);
+        ResultCache cache = null;
+        if (method.isAnnotationPresent(Cacheable.class)) {
+            Cacheable cacheable = method.getAnnotation(Cacheable.class);
+            cache = new ResultCache(variableTypes, cacheable.timeUnit().toNanos(cacheable.ttl()), cacheable.maxSize());
+        }
+        queryHandlers.insert(command, new HandlerEntry(instance, method, variableTypes, invoker,
+                CompletionStage.class.isAssignableFrom(method.getReturnType()), new ResultWriter(context.getObjectMapper(), method),
+                commandMetrics, cache, admission));
+        metrics.put(command, commandMetrics);
+        if (cache == null) {
+            caches.remove(command);
+        } else {
+            caches.put(command, cache);
+        }
+    }
+
+    /**
+     * Add the built-in {@value #METRICS_COMMAND} command. Like any route, its result writer is bound to the
+     * serializers of the object mapper when it is added, so it is added once the object mapper is configured.
+     */
+    public void addMetricsRoute() {
+        try {
+            insertRoute(METRICS_COMMAND, this, CommandRouter.class.getMethod("getMetricsSnapshot"), List.of(), args -> getMetricsSnapshot(), null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the metrics of the handlers.
+     *
+     * @return Metrics by command pattern.
+     */
+    public Map<String, CommandMetrics> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * Get the statistics of the caches of {@link Cacheable} handlers.
+     *
+     * @return Statistics by command pattern.
+     */
+    public Map<String, ResultCache.Stats> getCacheStats() {
+        Map<String, ResultCache.Stats> stats = new TreeMap<>();
+        caches.forEach((command, cache) -> stats.put(command, cache.stats()));
+        return stats;
+    }
+
+    /**
+     * Take snapshots of the metrics of the handlers, as returned by the {@value #METRICS_COMMAND} command.
+     *
+     * @return Snapshots by command pattern.
+     */
+    public Map<String, CommandMetrics.Snapshot> getMetricsSnapshot() {
+        Map<String, CommandMetrics.Snapshot> snapshots = new TreeMap<>();
+        metrics.forEach((command, commandMetrics) -> snapshots.put(command, commandMetrics.snapshot()));
+        return snapshots;
+    }
+
+    private static CommandArguments bindPathVariables(RouteTree.Route<HandlerEntry> route, String command, int[] captures, CommandArguments args) {
+        String[] names = route.parameterNames();
+        return names.length == 0 ? args : new PathArguments(command, names, captures, args);
+    }
+
+    /**
+     * Find the route of a command, leaving the offsets of its placeholders in the captures of this thread. The
+     * captures grow, and the lookup is retried, when a route with more placeholders was added concurrently.
+     */
+    private RouteTree.Route<HandlerEntry> find(CharSequence command) {
+        int[] captures = CAPTURES.get();
+        RouteTree.Route<HandlerEntry> route = queryHandlers.find(command, captures);
+        while (route != null && 2 * route.parameterNames().length > captures.length) {
+            captures = new int[2 * route.parameterNames().length];
+            CAPTURES.set(captures);
+            route = queryHandlers.find(command, captures);
+        }
+        return route;
+    }
+
+    /**
+     * Copy the offsets of the placeholders of the route last found by this thread, as the arguments keep them after
+     * the captures of the thread are reused. Routes without placeholders do not allocate.
+     */
+    private static int[] captures(RouteTree.Route<HandlerEntry> route) {
+        int length = 2 * route.parameterNames().length;
+        return length == 0 ? NO_CAPTURES : Arrays.copyOf(CAPTURES.get(), length);
+    }
+
+    private static Object call(HandlerEntry entry, CommandArguments args) throws ResponseErrorException {
+        AdmissionControl admission = entry.admission();
+        if (admission == null) {
+            return await(entry, entry.invoke(args));
+        }
+        admission.acquire();
+        long start = System.nanoTime();
+        try {
+            return await(entry, entry.invoke(args));
+        } finally {
+            admission.release(System.nanoTime() - start);
+        }
+    }
+
+    private static Object await(HandlerEntry entry, Object result) throws ResponseErrorException {
+        if (!entry.async() || result == null) {
+            return result;
+        }
+        try {
+            return ((CompletionStage<?>) result).toCompletableFuture().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseErrorException(500, e.getMessage(), e);
+        } catch (ExecutionException e) {
+            throw toResponseError(e);
+        }
+    }
+
+    /**
+     * Unwrap the failure of a command, as thrown by {@link #executeAsync} and its dependent stages.
+     *
+     * @param error Failure.
+     * @return The {@link ResponseErrorException} causing the failure, or one with status 500 for other errors.
+     */
+    public static ResponseErrorException toResponseError(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof ResponseErrorException responseErrorException) {
+            return responseErrorException;
+        }
+        return new ResponseErrorException(500, error.getMessage(), error);
+    }
+
+    private record Resolution(RouteTree.Route<HandlerEntry> route, int[] captures) {
+    }
+
+    protected record HandlerEntry(Object instance, Method method, List<Pair<String, VariableType>> variableTypes,
+                                  CommandInvoker invoker, boolean async, ResultWriter resultWriter,
+                                  CommandMetrics metrics, ResultCache cache, AdmissionControl admission) {
+        private Object invoke(CommandArguments args) throws ResponseErrorException {
+            try {
+                return invoker.invoke(args);
+            } catch (ResponseErrorException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new ResponseErrorException(500, e.getMessage(), e);
             }
+        }
+
+        private String serialize(Object result) throws ResponseErrorException {
+            try {
+                return resultWriter.writeAsString(result);
+            } catch (Exception e) {
+                throw new ResponseErrorException(500, e.getMessage(), e);
+            }
+        }
+
+        private void write(ApplicationContext context, Object result, OutputStream out) throws ResponseErrorException {
             try {
-                Object result = method.invoke(instance, params);
-                if (result instanceof String || result instanceof Integer || result instanceof Boolean ||
-                        result instanceof Float || result instanceof Double || result instanceof Byte ||
-                        result instanceof Character || result instanceof Short || result instanceof Long) {
-                    return result.toString();
-                } else {
-                    return context.getObjectMapper().writeValueAsString(result);
+                if (ResultWriter.isScalar(result)) {
+                    out.write(result.toString().getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    return;
                 }
-            } catch (InvocationTargetException e) {
-                if (e.getCause() instanceof ResponseErrorException) {
-                    throw (ResponseErrorException) e.getCause();
-                } else {
-                    throw new ResponseErrorException(500, e.getCause().getMessage(), e.getCause());
+                try (JsonGenerator generator = context.getObjectMapper().createGenerator(out, JsonEncoding.UTF8)) {
+                    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                    resultWriter.write(generator, result);
                 }
             } catch (Exception e) {
                 throw new ResponseErrorException(500, e.getMessage(), e);
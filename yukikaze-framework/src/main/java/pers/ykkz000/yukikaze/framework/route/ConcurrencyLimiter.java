@@ -0,0 +1,96 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.route;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free limit of concurrent calls. An adaptive limiter moves its limit between 1 and its maximum like TCP
+ * congestion control: it is cut by a tenth when a call takes more than twice the baseline latency, and raised by one
+ * after a limit's worth of normal calls made while at least half the limit was in use. Adjustments from concurrent
+ * releases may overwrite each other, which only slows adaptation.
+ *
+ * @author ykkz000
+ */
+class ConcurrencyLimiter {
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger normalCalls = new AtomicInteger();
+    private final int maxLimit;
+    private final boolean adaptive;
+    private volatile int limit;
+    private volatile long baselineNanos;
+
+    ConcurrencyLimiter(int maxLimit, boolean adaptive) {
+        if (maxLimit < 1) {
+            throw new IllegalArgumentException("Concurrency limit must be positive: " + maxLimit);
+        }
+        this.maxLimit = maxLimit;
+        this.adaptive = adaptive;
+        this.limit = maxLimit;
+    }
+
+    boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    void release(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        if (adaptive) {
+            adapt(latencyNanos, current);
+        }
+    }
+
+    /**
+     * Give back a permit of a call that was not made, without adapting the limit.
+     */
+    void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    private void adapt(long latencyNanos, int inFlightBefore) {
+        long baseline = baselineNanos;
+        if (baseline == 0 || latencyNanos < baseline) {
+            baselineNanos = Math.max(1, latencyNanos);
+            return;
+        }
+        baselineNanos = baseline + ((latencyNanos - baseline) >> 8);
+        int currentLimit = limit;
+        if (latencyNanos > 2 * baseline) {
+            limit = Math.max(1, currentLimit - Math.max(1, currentLimit / 10));
+            normalCalls.set(0);
+        } else if (inFlightBefore * 2 >= currentLimit && currentLimit < maxLimit && normalCalls.incrementAndGet() >= currentLimit) {
+            limit = currentLimit + 1;
+            normalCalls.set(0);
+        }
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.framework.route;
+
+import pers.ykkz000.yukikaze.framework.util.ParseUtil;
+
+/**
+ * Arguments whose placeholders are read from the matched command and other arguments from a delegate.
+ *
+ * @author ykkz000
+ */
+class PathArguments implements CommandArguments {
+    private final String command;
+    private final String[] names;
+    private final int[] captures;
+    private final CommandArguments delegate;
+
+    PathArguments(String command, String[] names, int[] captures, CommandArguments delegate) {
+        this.command = command;
+        this.names = names;
+        this.captures = captures;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getString(String name) {
+        int i = find(name);
+        return i < 0 ? delegate.getString(name) : command.substring(captures[2 * i], captures[2 * i + 1]);
+    }
+
+    @Override
+    public byte getByte(String name) throws NumberFormatException {
+        int i = find(name);
+        return i < 0 ? delegate.getByte(name) : ParseUtil.parseByte(command, captures[2 * i], captures[2 * i + 1]);
+    }
+
+    @Override
+    public char getChar(String name) {
+        int i = find(name);
+        return i < 0 ? delegate.getChar(name) : command.charAt(captures[2 * i]);
+    }
+
+    @Override
+    public short getShort(String name) throws NumberFormatException {
+        int i = find(name);
+        return i < 0 ? delegate.getShort(name) : ParseUtil.parseShort(command, captures[2 * i], captures[2 * i + 1]);
+    }
+
+    @Override
+    public int getInt(String name) throws NumberFormatException {
+        int i = find(name);
+        return i < 0 ? delegate.getInt(name) : ParseUtil.parseInt(command, captures[2 * i], captures[2 * i + 1]);
+    }
+
+    @Override
+    public long getLong(String name) throws NumberFormatException {
+        int i = find(name);
+        return i < 0 ? delegate.getLong(name) : ParseUtil.parseLong(command, captures[2 * i], captures[2 * i + 1]);
+    }
+
+    @Override
+    public float getFloat(String name) throws NumberFormatException {
+        int i = find(name);
+        return i < 0 ? delegate.getFloat(name) : ParseUtil.parseFloat(command, captures[2 * i], captures[2 * i + 1]);
+    }
+
+    @Override
+    public double getDouble(String name) throws NumberFormatException {
+        int i = find(name);
+        return i < 0 ? delegate.getDouble(name) : ParseUtil.parseDouble(command, captures[2 * i], captures[2 * i + 1]);
+    }
+
+    @Override
+    public boolean getBoolean(String name) {
+        int i = find(name);
+        return i < 0 ? delegate.getBoolean(name) : ParseUtil.parseBoolean(command, captures[2 * i], captures[2 * i + 1]);
+    }
+
+    private int find(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
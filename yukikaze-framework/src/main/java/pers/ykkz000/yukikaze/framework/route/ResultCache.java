@@ -0,0 +1,244 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.route;
+
+import org.apache.commons.math3.util.Pair;
+import pers.ykkz000.yukikaze.framework.exception.ResponseErrorException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the serialized results of a handler, keyed by its parsed arguments. Concurrent requests for a missing key
+ * share one load. Entries expire after a time to live, and when the cache is full they are evicted with the CLOCK
+ * approximation of LRU: an entry used since it was last passed over gets a second chance.
+ *
+ * @author ykkz000
+ */
+public class ResultCache {
+    private final List<Pair<String, VariableType>> variableTypes;
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Map<List<Object>, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger clockSize = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    ResultCache(List<Pair<String, VariableType>> variableTypes, long ttlNanos, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.variableTypes = variableTypes;
+        this.ttlNanos = ttlNanos;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Build the key of a call from its arguments.
+     *
+     * @param args Arguments of the call.
+     * @return The key, or null if an argument cannot be parsed and the call must not be cached.
+     */
+    List<Object> key(CommandArguments args) {
+        Object[] values = new Object[variableTypes.size()];
+        for (int i = 0; i < values.length; i++) {
+            Pair<String, VariableType> variableType = variableTypes.get(i);
+            String value = args.getString(variableType.getFirst());
+            try {
+                values[i] = value == null ? null : variableType.getSecond().getParser().parse(value);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+        return Arrays.asList(values);
+    }
+
+    /**
+     * Get a cached result, loading it on the calling thread if missing.
+     *
+     * @param key    Key from {@link #key}.
+     * @param loader Loader of the result.
+     * @return The result.
+     * @throws ResponseErrorException If the load failed.
+     */
+    String get(List<Object> key, Loader loader) throws ResponseErrorException {
+        Entry entry = lookup(key);
+        if (entry == null) {
+            entry = new Entry(key);
+            Entry existing = entries.putIfAbsent(key, entry);
+            if (existing == null) {
+                misses.increment();
+                try {
+                    String result = loader.load();
+                    loaded(entry, result);
+                    return result;
+                } catch (Throwable e) {
+                    entries.remove(key, entry);
+                    entry.result.completeExceptionally(e);
+                    throw e;
+                }
+            }
+            existing.used = true;
+            hits.increment();
+            entry = existing;
+        }
+        try {
+            return entry.result.join();
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            if (cause instanceof ResponseErrorException responseErrorException) {
+                throw responseErrorException;
+            }
+            throw new ResponseErrorException(500, cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Get a cached result, loading it asynchronously if missing.
+     *
+     * @param key    Key from {@link #key}.
+     * @param loader Loader starting the load of the result.
+     * @return Future of the result, completed exceptionally if the loader fails, even synchronously.
+     */
+    CompletableFuture<String> getAsync(List<Object> key, Supplier<CompletableFuture<String>> loader) {
+        Entry entry = lookup(key);
+        if (entry == null) {
+            entry = new Entry(key);
+            Entry existing = entries.putIfAbsent(key, entry);
+            if (existing == null) {
+                misses.increment();
+                Entry created = entry;
+                CompletableFuture<String> load;
+                try {
+                    load = loader.get();
+                } catch (Throwable e) {
+                    load = CompletableFuture.failedFuture(e);
+                }
+                load.whenComplete((result, error) -> {
+                    if (error == null) {
+                        loaded(created, result);
+                    } else {
+                        entries.remove(key, created);
+                        created.result.completeExceptionally(error);
+                    }
+                });
+            } else {
+                existing.used = true;
+                hits.increment();
+                entry = existing;
+            }
+        }
+        return entry.result.copy();
+    }
+
+    private Entry lookup(List<Object> key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (!entry.result.isDone() || ttlNanos <= 0 || System.nanoTime() - entry.expiresAt < 0) {
+                entry.used = true;
+                hits.increment();
+                return entry;
+            }
+            entries.remove(key, entry);
+        }
+        return null;
+    }
+
+    private void loaded(Entry entry, String result) {
+        entry.expiresAt = System.nanoTime() + ttlNanos;
+        entry.result.complete(result);
+        clock.offer(entry);
+        clockSize.incrementAndGet();
+        evict();
+    }
+
+    private void evict() {
+        for (int budget = 2 * clockSize.get(); budget > 0; budget--) {
+            boolean full = entries.size() > maxSize;
+            if (!full && clockSize.get() <= 2 * maxSize) {
+                return;
+            }
+            Entry entry = clock.poll();
+            if (entry == null) {
+                return;
+            }
+            clockSize.decrementAndGet();
+            if (entries.get(entry.key) != entry) {
+                continue;
+            }
+            if (full && !entry.used) {
+                if (entries.remove(entry.key, entry)) {
+                    evictions.increment();
+                }
+                continue;
+            }
+            entry.used = false;
+            clock.offer(entry);
+            clockSize.incrementAndGet();
+        }
+    }
+
+    /**
+     * Take a snapshot of the statistics of the cache.
+     *
+     * @return The statistics.
+     */
+    public Stats stats() {
+        return new Stats(entries.size(), hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    /**
+     * Loader of a missing result.
+     */
+    @FunctionalInterface
+    interface Loader {
+        String load() throws ResponseErrorException;
+    }
+
+    private static final class Entry {
+        private final List<Object> key;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private volatile long expiresAt;
+        private volatile boolean used;
+
+        private Entry(List<Object> key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Statistics of a cache.
+     *
+     * @param size      Number of cached results, including results being loaded.
+     * @param hits      Number of requests answered from the cache or joining a running load.
+     * @param misses    Number of requests that had to load their result.
+     * @param evictions Number of results evicted because the cache was full.
+     */
+    public record Stats(int size, long hits, long misses, long evictions) {
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.framework.route;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.BaseStream;
+
+/**
+ * Writer of the results of a handler. An {@link ObjectWriter} with a prefetched serializer is built for the declared
+ * return type when every result serializes like that type; other results use writers cached by runtime class.
+ * {@link BaseStream} and {@link Iterator} results are written as JSON arrays item by item while they are consumed,
+ * so they are never held in memory as a whole.
+ *
+ * @author ykkz000
+ */
+class ResultWriter {
+    private static final int MAX_RUNTIME_WRITERS = 8;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter declaredWriter;
+    private final ObjectWriter itemWriter;
+    private final Map<Class<?>, ObjectWriter> runtimeWriters = new ConcurrentHashMap<>();
+
+    ResultWriter(ObjectMapper objectMapper, Method method) {
+        this.objectMapper = objectMapper;
+        JavaType type = objectMapper.getTypeFactory().constructType(method.getGenericReturnType());
+        if (type.isTypeOrSubTypeOf(CompletionStage.class)) {
+            type = type.containedTypeOrUnknown(0);
+        }
+        if (type.isTypeOrSubTypeOf(BaseStream.class) || type.isTypeOrSubTypeOf(Iterator.class)) {
+            declaredWriter = null;
+            JavaType itemType = type.containedTypeOrUnknown(0);
+            itemWriter = isStatic(itemType) ? objectMapper.writerFor(itemType) : null;
+        } else {
+            declaredWriter = isStatic(type) ? objectMapper.writerFor(type) : null;
+            itemWriter = null;
+        }
+    }
+
+    /**
+     * Check whether a result is written as its plain string form instead of JSON.
+     *
+     * @param result Result of a handler.
+     * @return True if the result is a string or a boxed primitive.
+     */
+    static boolean isScalar(Object result) {
+        return result instanceof String || result instanceof Integer || result instanceof Boolean ||
+                result instanceof Float || result instanceof Double || result instanceof Byte ||
+                result instanceof Character || result instanceof Short || result instanceof Long;
+    }
+
+    /**
+     * Write a result as string: scalars in their plain form, others as JSON.
+     *
+     * @param result Result of the handler.
+     * @return Written result.
+     * @throws IOException If failed to write.
+     */
+    String writeAsString(Object result) throws IOException {
+        if (isScalar(result)) {
+            return result.toString();
+        }
+        if (result instanceof BaseStream || result instanceof Iterator) {
+            StringWriter writer = new StringWriter();
+            try (JsonGenerator generator = objectMapper.createGenerator(writer)) {
+                write(generator, result);
+            }
+            return writer.toString();
+        }
+        return writerFor(result, declaredWriter).writeValueAsString(result);
+    }
+
+    /**
+     * Write a result as JSON.
+     *
+     * @param generator Generator to write to.
+     * @param result    Result of the handler.
+     * @throws IOException If failed to write.
+     */
+    void write(JsonGenerator generator, Object result) throws IOException {
+        if (result instanceof BaseStream<?, ?> stream) {
+            try (stream) {
+                writeItems(generator, stream.iterator());
+            }
+        } else if (result instanceof Iterator<?> iterator) {
+            writeItems(generator, iterator);
+        } else {
+            writerFor(result, declaredWriter).writeValue(generator, result);
+        }
+    }
+
+    private void writeItems(JsonGenerator generator, Iterator<?> iterator) throws IOException {
+        generator.writeStartArray();
+        while (iterator.hasNext()) {
+            Object item = iterator.next();
+            writerFor(item, itemWriter).writeValue(generator, item);
+        }
+        generator.writeEndArray();
+    }
+
+    private ObjectWriter writerFor(Object value, ObjectWriter staticWriter) {
+        if (staticWriter != null || value == null) {
+            return staticWriter != null ? staticWriter : objectMapper.writer();
+        }
+        Class<?> type = value.getClass();
+        ObjectWriter writer = runtimeWriters.get(type);
+        if (writer != null) {
+            return writer;
+        }
+        if (runtimeWriters.size() >= MAX_RUNTIME_WRITERS) {
+            return objectMapper.writer();
+        }
+        return runtimeWriters.computeIfAbsent(type, objectMapper::writerFor);
+    }
+
+    /**
+     * Check whether every value of a type serializes like the type itself: final classes and containers, whose
+     * elements are still serialized by their runtime type unless that is final too.
+     */
+    private static boolean isStatic(JavaType type) {
+        if (type.isContainerType()) {
+            return true;
+        }
+        Class<?> rawClass = type.getRawClass();
+        return Modifier.isFinal(rawClass.getModifiers()) && !rawClass.isPrimitive() && rawClass != String.class
+                && !isScalarClass(rawClass);
+    }
+
+    private static boolean isScalarClass(Class<?> clazz) {
+        return clazz == Integer.class || clazz == Boolean.class || clazz == Float.class || clazz == Double.class ||
+                clazz == Byte.class || clazz == Character.class || clazz == Short.class || clazz == Long.class;
+    }
+}
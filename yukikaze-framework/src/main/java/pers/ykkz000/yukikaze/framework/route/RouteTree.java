@@ -0,0 +1,293 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.framework.route;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tree of routes whose commands are split into segments by '/'.
+ * A segment is either a literal, a placeholder "{name}" matching one non-empty segment, a wildcard "*" matching one
+ * non-empty segment, or a trailing "**" matching the remaining segments. At each segment a literal child takes strict
+ * precedence over a placeholder, and a placeholder over a wildcard: once a child is chosen the lookup does not
+ * backtrack into its siblings, so with routes "a/b/c" and "a/{x}/d" the command "a/b/d" matches neither. If the
+ * chosen path ends without a route, the "**" route closest to the end of the path matches instead. Lookups take no
+ * lock and do not allocate; they visit each segment of the command once, so their cost depends on the length of the
+ * command, not the number of routes.
+ *
+ * @param <T> Type of the values bound to the routes.
+ * @author ykkz000
+ */
+public class RouteTree<T> {
+    private static final char SEPARATOR = '/';
+    private static final String WILDCARD = "*";
+    private static final String CATCH_ALL = "**";
+    private final Node<T> root = new Node<>();
+    private volatile int maxParameters;
+
+    /**
+     * Get the names of the placeholders of a pattern.
+     *
+     * @param pattern Pattern of the route.
+     * @return Names of the placeholders in order.
+     */
+    public static List<String> parameterNames(String pattern) {
+        List<String> names = new ArrayList<>();
+        int start = 0;
+        while (true) {
+            int end = pattern.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = pattern.length();
+            }
+            String segment = pattern.substring(start, end);
+            if (isPlaceholder(segment)) {
+                names.add(segment.substring(1, segment.length() - 1));
+            }
+            if (end == pattern.length()) {
+                return names;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Bind a value to a pattern. A value already bound to the same pattern is replaced.
+     *
+     * @param pattern Pattern of the route.
+     * @param value   Value of the route.
+     * @throws IllegalArgumentException If "**" is not the last segment.
+     */
+    public synchronized void insert(String pattern, T value) throws IllegalArgumentException {
+        List<String> names = parameterNames(pattern);
+        Route<T> route = new Route<>(pattern, value, names.toArray(new String[0]));
+        Node<T> node = root;
+        int start = 0;
+        while (true) {
+            int end = pattern.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = pattern.length();
+            }
+            String segment = pattern.substring(start, end);
+            boolean last = end == pattern.length();
+            if (CATCH_ALL.equals(segment)) {
+                if (!last) {
+                    throw new IllegalArgumentException("\"" + CATCH_ALL + "\" must be the last segment of route " + pattern);
+                }
+                node.catchAll = route;
+                break;
+            }
+            node = node.child(segment);
+            if (last) {
+                node.route = route;
+                break;
+            }
+            start = end + 1;
+        }
+        maxParameters = Math.max(maxParameters, names.size());
+    }
+
+    /**
+     * Find the route of a command.
+     *
+     * @param command  Command.
+     * @param captures Array receiving the start and end offsets of each placeholder in the command. Offsets that
+     *                 do not fit are dropped, so a caller whose array is shorter than twice the number of
+     *                 placeholders of the returned route must retry with a longer one; an array twice
+     *                 {@link #getMaxParameters()} long may still be too short if a route is inserted concurrently.
+     * @return Matched route, or null if no route matches.
+     */
+    public Route<T> find(CharSequence command, int[] captures) {
+        Node<T> node = root;
+        Route<T> catchAll = null;
+        int start = 0;
+        int depth = 0;
+        while (true) {
+            if (node.catchAll != null) {
+                catchAll = node.catchAll;
+            }
+            int end = start;
+            while (end < command.length() && command.charAt(end) != SEPARATOR) {
+                end++;
+            }
+            Node<T> child = node.literals.get(command, start, end);
+            if (child == null && end > start) {
+                child = node.parameter;
+                if (child != null) {
+                    if (2 * depth + 1 < captures.length) {
+                        captures[2 * depth] = start;
+                        captures[2 * depth + 1] = end;
+                    }
+                    depth++;
+                } else {
+                    child = node.wildcard;
+                }
+            }
+            if (child == null) {
+                return catchAll;
+            }
+            if (end == command.length()) {
+                Route<T> route = child.route != null ? child.route : child.catchAll;
+                return route != null ? route : catchAll;
+            }
+            node = child;
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Get the largest number of placeholders of a route.
+     *
+     * @return Largest number of placeholders.
+     */
+    public int getMaxParameters() {
+        return maxParameters;
+    }
+
+    private static boolean isPlaceholder(String segment) {
+        return segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}';
+    }
+
+    /**
+     * Route bound in the tree.
+     *
+     * @param pattern        Pattern of the route.
+     * @param value          Value of the route.
+     * @param parameterNames Names of the placeholders in order.
+     * @param <T>            Type of the value.
+     */
+    public record Route<T>(String pattern, T value, String[] parameterNames) {
+    }
+
+    private static final class Node<T> {
+        private volatile LiteralTable<T> literals = LiteralTable.empty();
+        private volatile Node<T> parameter;
+        private volatile Node<T> wildcard;
+        private volatile Route<T> route;
+        private volatile Route<T> catchAll;
+
+        private Node<T> child(String segment) {
+            if (isPlaceholder(segment)) {
+                if (parameter == null) {
+                    parameter = new Node<>();
+                }
+                return parameter;
+            }
+            if (WILDCARD.equals(segment)) {
+                if (wildcard == null) {
+                    wildcard = new Node<>();
+                }
+                return wildcard;
+            }
+            Node<T> child = literals.get(segment, 0, segment.length());
+            if (child == null) {
+                child = new Node<>();
+                LiteralTable<T> table = literals.with(segment, child);
+                if (table != literals) {
+                    literals = table;
+                }
+            }
+            return child;
+        }
+    }
+
+    /**
+     * Open addressing table of literal segments. Segments are hashed like {@link String#hashCode()} directly from the
+     * command, so no substring is created. Writers hold the lock of the tree and publish each key after its node; a
+     * table that has to grow is rebuilt and published as a whole.
+     */
+    private static final class LiteralTable<T> {
+        private final AtomicReferenceArray<String> keys;
+        private final Node<?>[] nodes;
+        private int size;
+
+        private LiteralTable(int capacity) {
+            keys = new AtomicReferenceArray<>(capacity);
+            nodes = new Node<?>[capacity];
+        }
+
+        private static <T> LiteralTable<T> empty() {
+            return new LiteralTable<>(2);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<T> get(CharSequence command, int start, int end) {
+            int length = end - start;
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + command.charAt(i);
+            }
+            int mask = nodes.length - 1;
+            for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+                String key = keys.getAcquire(i);
+                if (key == null) {
+                    return null;
+                }
+                if (key.length() == length && key.hashCode() == hash && regionEquals(key, command, start)) {
+                    return (Node<T>) nodes[i];
+                }
+            }
+        }
+
+        /**
+         * Add a segment.
+         *
+         * @return This table, or a larger copy that has to be published.
+         */
+        private LiteralTable<T> with(String key, Node<T> node) {
+            if ((size + 1) * 2 <= nodes.length) {
+                put(key, node);
+                return this;
+            }
+            LiteralTable<T> table = new LiteralTable<>(nodes.length * 2);
+            for (int i = 0; i < nodes.length; i++) {
+                String existing = keys.get(i);
+                if (existing != null) {
+                    table.put(existing, nodes[i]);
+                }
+            }
+            table.put(key, node);
+            return table;
+        }
+
+        private void put(String key, Node<?> node) {
+            int mask = nodes.length - 1;
+            int i = spread(key.hashCode()) & mask;
+            while (keys.get(i) != null) {
+                i = (i + 1) & mask;
+            }
+            nodes[i] = node;
+            keys.setRelease(i, key);
+            size++;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean regionEquals(String key, CharSequence command, int start) {
+            for (int i = 0; i < key.length(); i++) {
+                if (key.charAt(i) != command.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.framework.route;
+
+import pers.ykkz000.yukikaze.framework.util.ParseUtil;
+
+import java.util.Arrays;
+
+/**
+ * Arguments given as offsets of their names and values into a buffer. Instances can be cleared and reused, so
+ * reading a request needs no allocation until a string argument is requested.
+ *
+ * @author ykkz000
+ */
+public abstract class SliceArguments implements CommandArguments {
+    private int[] offsets = new int[16];
+    private int count;
+
+    /**
+     * Add an argument.
+     *
+     * @param nameStart  Start of the name, inclusive.
+     * @param nameEnd    End of the name, exclusive.
+     * @param valueStart Start of the value, inclusive.
+     * @param valueEnd   End of the value, exclusive.
+     * @return This object.
+     */
+    public SliceArguments add(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        int index = count * 4;
+        if (index == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[index] = nameStart;
+        offsets[index + 1] = nameEnd;
+        offsets[index + 2] = valueStart;
+        offsets[index + 3] = valueEnd;
+        count++;
+        return this;
+    }
+
+    /**
+     * Remove all arguments.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Get the number of arguments.
+     *
+     * @return Number of arguments.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the buffer as characters.
+     *
+     * @return Characters of the buffer.
+     */
+    protected abstract CharSequence chars();
+
+    /**
+     * Decode a value as string.
+     *
+     * @param start Start of the value, inclusive.
+     * @param end   End of the value, exclusive.
+     * @return Decoded value.
+     */
+    protected abstract String decode(int start, int end);
+
+    @Override
+    public String getString(String name) {
+        int index = find(name);
+        return index < 0 ? null : decode(offsets[index + 2], offsets[index + 3]);
+    }
+
+    @Override
+    public byte getByte(String name) throws NumberFormatException {
+        int index = require(name);
+        return ParseUtil.parseByte(chars(), offsets[index + 2], offsets[index + 3]);
+    }
+
+    @Override
+    public char getChar(String name) {
+        int index = find(name);
+        if (index < 0 || offsets[index + 2] == offsets[index + 3]) {
+            throw new IllegalArgumentException("Missing character argument: " + name);
+        }
+        return decode(offsets[index + 2], offsets[index + 3]).charAt(0);
+    }
+
+    @Override
+    public short getShort(String name) throws NumberFormatException {
+        int index = require(name);
+        return ParseUtil.parseShort(chars(), offsets[index + 2], offsets[index + 3]);
+    }
+
+    @Override
+    public int getInt(String name) throws NumberFormatException {
+        int index = require(name);
+        return ParseUtil.parseInt(chars(), offsets[index + 2], offsets[index + 3]);
+    }
+
+    @Override
+    public long getLong(String name) throws NumberFormatException {
+        int index = require(name);
+        return ParseUtil.parseLong(chars(), offsets[index + 2], offsets[index + 3]);
+    }
+
+    @Override
+    public float getFloat(String name) throws NumberFormatException {
+        int index = require(name);
+        return ParseUtil.parseFloat(chars(), offsets[index + 2], offsets[index + 3]);
+    }
+
+    @Override
+    public double getDouble(String name) throws NumberFormatException {
+        int index = require(name);
+        return ParseUtil.parseDouble(chars(), offsets[index + 2], offsets[index + 3]);
+    }
+
+    @Override
+    public boolean getBoolean(String name) {
+        int index = find(name);
+        return index >= 0 && ParseUtil.parseBoolean(chars(), offsets[index + 2], offsets[index + 3]);
+    }
+
+    private int require(String name) throws NumberFormatException {
+        int index = find(name);
+        if (index < 0) {
+            throw new NumberFormatException("Missing argument: " + name);
+        }
+        return index;
+    }
+
+    private int find(String name) {
+        CharSequence chars = chars();
+        for (int index = 0; index < count * 4; index += 4) {
+            int start = offsets[index];
+            if (offsets[index + 1] - start != name.length()) {
+                continue;
+            }
+            int i = 0;
+            while (i < name.length() && chars.charAt(start + i) == name.charAt(i)) {
+                i++;
+            }
+            if (i == name.length()) {
+                return index;
+            }
+        }
+        return -1;
+    }
+}
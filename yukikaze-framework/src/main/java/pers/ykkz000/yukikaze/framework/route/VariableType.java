@@ -69,6 +69,35 @@ public enum VariableType {
         this.parser = parser;
     }
 
+    /**
+     * Get the variable type of a class. Primitive types and their wrappers map to the same variable type.
+     *
+     * @param type class.
+     * @return variable type, or null if the class is not supported.
+     */
+    public static VariableType of(Class<?> type) {
+        if (type == String.class) {
+            return STRING;
+        } else if (type == byte.class || type == Byte.class) {
+            return BYTE;
+        } else if (type == char.class || type == Character.class) {
+            return CHARACTER;
+        } else if (type == int.class || type == Integer.class) {
+            return INTEGER;
+        } else if (type == short.class || type == Short.class) {
+            return SHORT;
+        } else if (type == long.class || type == Long.class) {
+            return LONG;
+        } else if (type == float.class || type == Float.class) {
+            return FLOAT;
+        } else if (type == double.class || type == Double.class) {
+            return DOUBLE;
+        } else if (type == boolean.class || type == Boolean.class) {
+            return BOOLEAN;
+        }
+        return null;
+    }
+
     public interface Parser {
         /**
          * Parse string to object.
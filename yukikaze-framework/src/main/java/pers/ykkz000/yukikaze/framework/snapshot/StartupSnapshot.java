@@ -0,0 +1,372 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.snapshot;
+
+import lombok.Getter;
+import org.slf4j.LoggerFactory;
+import pers.ykkz000.yukikaze.framework.property.PropertyStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Snapshot of the resolved startup model, stored in a binary file and memory-mapped when read.
+ * The file starts with a magic number, a format version and a fingerprint of the classpath and property files; a
+ * snapshot whose fingerprint does not match the current one is ignored.
+ *
+ * @author ykkz000
+ */
+public class StartupSnapshot {
+    private static final int MAGIC = 0x594B534E;
+    private static final int VERSION = 2;
+    private static final byte NULL_VALUE = 0;
+    private static final byte STRING_VALUE = 1;
+    private static final byte LONG_VALUE = 2;
+    private static final byte DOUBLE_VALUE = 3;
+    private static final byte BOOLEAN_VALUE = 4;
+    private static final byte LIST_VALUE = 5;
+    private static final byte MAP_VALUE = 6;
+    @Getter
+    private final PropertyStore properties;
+    @Getter
+    private final List<String> annotationProcessors;
+    @Getter
+    private final List<String> moduleStarters;
+    @Getter
+    private final Map<String, String> beans;
+    @Getter
+    private final Map<String, List<String>> dependencyGraph;
+
+    /**
+     * @param properties           Loaded properties.
+     * @param annotationProcessors Class names of the annotation processors defined by modules, in order.
+     * @param moduleStarters       Class names of the module starters, in order.
+     * @param beans                Names of the defined beans mapped to their class names.
+     * @param dependencyGraph      Dependency graph of the beans created at startup.
+     */
+    public StartupSnapshot(PropertyStore properties, List<String> annotationProcessors, List<String> moduleStarters, Map<String, String> beans, Map<String, List<String>> dependencyGraph) {
+        this.properties = properties;
+        this.annotationProcessors = List.copyOf(annotationProcessors);
+        this.moduleStarters = List.copyOf(moduleStarters);
+        this.beans = Collections.unmodifiableMap(new LinkedHashMap<>(beans));
+        this.dependencyGraph = Collections.unmodifiableMap(new LinkedHashMap<>(dependencyGraph));
+    }
+
+    /**
+     * Compute the fingerprint of the startup inputs: the classpath entries with their sizes and modification times,
+     * and the contents of the property files.
+     *
+     * @param mainClass       Main class of the application.
+     * @param propertySources Contents of the property files.
+     * @return Fingerprint.
+     * @throws IOException If failed to read the attributes of a classpath entry.
+     */
+    public static long fingerprint(Class<?> mainClass, List<byte[]> propertySources) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 2);
+        digest.update(mainClass.getName().getBytes(StandardCharsets.UTF_8));
+        for (Path entry : classPathEntries(mainClass)) {
+            digest.update(entry.toString().getBytes(StandardCharsets.UTF_8));
+            if (Files.isDirectory(entry)) {
+                Files.walkFileTree(entry, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                        digest.update(entry.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                        digest.update(buffer.clear().putLong(attributes.size()).putLong(attributes.lastModifiedTime().toMillis()).flip());
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } else if (Files.exists(entry)) {
+                BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                digest.update(buffer.clear().putLong(attributes.size()).putLong(attributes.lastModifiedTime().toMillis()).flip());
+            }
+        }
+        for (byte[] propertySource : propertySources) {
+            digest.update(buffer.clear().putLong(propertySource.length).flip());
+            digest.update(propertySource);
+        }
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    private static Set<Path> classPathEntries(Class<?> mainClass) {
+        Set<Path> entries = new LinkedHashSet<>();
+        CodeSource codeSource = mainClass.getProtectionDomain().getCodeSource();
+        if (codeSource != null && codeSource.getLocation() != null) {
+            try {
+                entries.add(Path.of(codeSource.getLocation().toURI()).toAbsolutePath());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                LoggerFactory.getLogger(StartupSnapshot.class).debug("Failed to locate {}", codeSource.getLocation(), e);
+            }
+        }
+        for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                entries.add(Path.of(entry).toAbsolutePath());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Read a snapshot.
+     *
+     * @param path        Path of the snapshot file.
+     * @param fingerprint Current fingerprint.
+     * @return The snapshot, or empty if the file is missing, corrupted or taken with another fingerprint.
+     */
+    public static Optional<StartupSnapshot> read(Path path, long fingerprint) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != fingerprint) {
+                return Optional.empty();
+            }
+            PropertyStore properties = readProperties(buffer);
+            List<String> annotationProcessors = readList(buffer);
+            List<String> moduleStarters = readList(buffer);
+            Map<String, String> beans = readMap(buffer);
+            int size = readSize(buffer);
+            Map<String, List<String>> dependencyGraph = new LinkedHashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                dependencyGraph.put(readString(buffer), readList(buffer));
+            }
+            if (buffer.hasRemaining()) {
+                return Optional.empty();
+            }
+            return Optional.of(new StartupSnapshot(properties, annotationProcessors, moduleStarters, beans, dependencyGraph));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            LoggerFactory.getLogger(StartupSnapshot.class).debug("Ignoring unreadable snapshot {}", path, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Write the snapshot. The file is replaced atomically where the file system supports it, so a reader never sees
+     * a partly written snapshot.
+     *
+     * @param path        Path of the snapshot file.
+     * @param fingerprint Fingerprint of the inputs the snapshot was taken from.
+     * @throws IOException If failed to write the file.
+     */
+    public void write(Path path, long fingerprint) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(fingerprint);
+        writeProperties(output, properties);
+        writeList(output, annotationProcessors);
+        writeList(output, moduleStarters);
+        writeMap(output, beans);
+        output.writeInt(dependencyGraph.size());
+        for (Map.Entry<String, List<String>> entry : dependencyGraph.entrySet()) {
+            writeString(output, entry.getKey());
+            writeList(output, entry.getValue());
+        }
+        output.flush();
+        Path absolutePath = path.toAbsolutePath();
+        Files.createDirectories(absolutePath.getParent());
+        Path temporary = Files.createTempFile(absolutePath.getParent(), absolutePath.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, bytes.toByteArray());
+            try {
+                Files.move(temporary, absolutePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, absolutePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Read the number of elements of a collection. Every element takes at least one byte, so a size beyond the
+     * remaining bytes means the snapshot is corrupted.
+     */
+    private static int readSize(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        if (size < 0 || size > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return size;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readList(ByteBuffer buffer) {
+        int size = readSize(buffer);
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(readString(buffer));
+        }
+        return list;
+    }
+
+    private static Map<String, String> readMap(ByteBuffer buffer) {
+        int size = readSize(buffer);
+        Map<String, String> map = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            map.put(readString(buffer), readString(buffer));
+        }
+        return map;
+    }
+
+    private static PropertyStore readProperties(ByteBuffer buffer) {
+        int size = readSize(buffer);
+        PropertyStore.Builder builder = PropertyStore.builder();
+        for (int i = 0; i < size; i++) {
+            builder.put(readString(buffer), readValue(buffer));
+        }
+        return builder.build();
+    }
+
+    private static Object readValue(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case NULL_VALUE:
+                return null;
+            case STRING_VALUE:
+                return readString(buffer);
+            case LONG_VALUE:
+                return buffer.getLong();
+            case DOUBLE_VALUE:
+                return buffer.getDouble();
+            case BOOLEAN_VALUE:
+                return buffer.get() != 0;
+            case LIST_VALUE: {
+                int size = readSize(buffer);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(buffer));
+                }
+                return list;
+            }
+            case MAP_VALUE: {
+                int size = readSize(buffer);
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(readString(buffer), readValue(buffer));
+                }
+                return map;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown property value tag " + tag);
+        }
+    }
+
+    private static void writeProperties(DataOutputStream output, PropertyStore properties) throws IOException {
+        output.writeInt(properties.size());
+        for (String key : properties.getKeys()) {
+            writeString(output, key);
+            writeValue(output, properties.get(key));
+        }
+    }
+
+    private static void writeValue(DataOutputStream output, Object value) throws IOException {
+        if (value == null) {
+            output.writeByte(NULL_VALUE);
+        } else if (value instanceof Long l) {
+            output.writeByte(LONG_VALUE);
+            output.writeLong(l);
+        } else if (value instanceof Double d) {
+            output.writeByte(DOUBLE_VALUE);
+            output.writeDouble(d);
+        } else if (value instanceof Boolean b) {
+            output.writeByte(BOOLEAN_VALUE);
+            output.writeByte(b ? 1 : 0);
+        } else if (value instanceof List<?> list) {
+            output.writeByte(LIST_VALUE);
+            output.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(output, element);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            output.writeByte(MAP_VALUE);
+            output.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(output, entry.getKey().toString());
+                writeValue(output, entry.getValue());
+            }
+        } else {
+            output.writeByte(STRING_VALUE);
+            writeString(output, value.toString());
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static void writeList(DataOutputStream output, List<String> list) throws IOException {
+        output.writeInt(list.size());
+        for (String value : list) {
+            writeString(output, value);
+        }
+    }
+
+    private static void writeMap(DataOutputStream output, Map<String, String> map) throws IOException {
+        output.writeInt(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writeString(output, entry.getKey());
+            writeString(output, entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.transport;
+
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct byte buffers of one size. Direct buffers are expensive to allocate and are never freed eagerly,
+ * so connections borrow them for reading and for encoding responses and give them back when done.
+ *
+ * @author ykkz000
+ */
+public class BufferPool {
+    @Getter
+    private final int bufferSize;
+    private final int maxPooled;
+    private final Queue<ByteBuffer> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * Create a pool.
+     *
+     * @param bufferSize Capacity of each buffer in bytes.
+     * @param maxPooled  Maximum number of idle buffers kept.
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize < 16 || maxPooled < 0) {
+            throw new IllegalArgumentException("Invalid buffer pool: " + maxPooled + " buffers of " + bufferSize + " bytes");
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Borrow a cleared buffer, allocating one when none is idle.
+     *
+     * @return Buffer of {@link #getBufferSize()} bytes.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = idle.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        idleCount.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Give a buffer back. Buffers not allocated by this pool are ignored, so callers may pass any buffer they are
+     * done with.
+     *
+     * @param buffer Buffer, must not be used by the caller afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) {
+            return;
+        }
+        if (idleCount.incrementAndGet() > maxPooled) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        buffer.clear();
+        idle.offer(buffer);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.transport;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Output stream writing into a buffer of a {@link BufferPool}, moving to a larger heap buffer when it is full, so
+ * encoded messages are not copied from an intermediate array.
+ *
+ * @author ykkz000
+ */
+class ByteBufferOutputStream extends OutputStream {
+    private final BufferPool pool;
+    private ByteBuffer buffer;
+
+    ByteBufferOutputStream(BufferPool pool) {
+        this.pool = pool;
+        this.buffer = pool.acquire();
+    }
+
+    /**
+     * Get the buffer written so far; it is replaced when it grows.
+     *
+     * @return Buffer, positioned after the written bytes.
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Skip bytes to be filled in later.
+     *
+     * @param count Number of bytes.
+     */
+    void skip(int count) {
+        ensureCapacity(count);
+        buffer.position(buffer.position() + count);
+    }
+
+    /**
+     * Give the buffer back to the pool, when the written bytes are discarded.
+     */
+    void discard() {
+        pool.release(buffer);
+        buffer = null;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        buffer.put(b, off, len);
+    }
+
+    private void ensureCapacity(int count) {
+        if (buffer.remaining() >= count) {
+            return;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + count));
+        grown.put(buffer.flip());
+        pool.release(buffer);
+        buffer = grown;
+    }
+}
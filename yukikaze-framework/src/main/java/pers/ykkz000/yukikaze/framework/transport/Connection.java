@@ -0,0 +1,247 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.transport;
+
+import lombok.Getter;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Connection accepted by a {@link NioServer}. Reading happens on the event loop thread; {@link #write(ByteBuffer)}
+ * and {@link #close()} may be called from any thread and are carried out by the event loop.
+ *
+ * @author ykkz000
+ */
+public final class Connection {
+    private static final int MAX_GATHER = 16;
+    private final NioServer server;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ArrayDeque<ByteBuffer> writing = new ArrayDeque<>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    @Getter
+    private final SocketAddress remoteAddress;
+    private ConnectionHandler handler;
+    private ByteBuffer readBuffer;
+    private int requiredCapacity;
+    private boolean readSuspended;
+    private volatile boolean resumeRequested;
+    private volatile boolean closeRequested;
+    private volatile boolean closed;
+
+    Connection(NioServer server, SocketChannel channel, SelectionKey key) throws IOException {
+        this.server = server;
+        this.channel = channel;
+        this.key = key;
+        this.remoteAddress = channel.getRemoteAddress();
+        this.readBuffer = server.getBufferPool().acquire();
+    }
+
+    void setHandler(ConnectionHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Queue bytes to be sent. Writes are sent in the order they are queued; several queued buffers are sent with
+     * one gathering write.
+     *
+     * @param buffer Bytes between position and limit. Buffers of the pool of the server are given back once sent.
+     */
+    public void write(ByteBuffer buffer) {
+        if (closed || closeRequested) {
+            server.getBufferPool().release(buffer);
+            return;
+        }
+        outbound.offer(buffer);
+        scheduleFlush();
+    }
+
+    /**
+     * Close the connection once the queued writes are sent.
+     */
+    public void close() {
+        closeRequested = true;
+        scheduleFlush();
+    }
+
+    /**
+     * Check whether the connection is closed or closing.
+     *
+     * @return True if no more bytes will be sent.
+     */
+    public boolean isClosed() {
+        return closed || closeRequested;
+    }
+
+    /**
+     * Make the read buffer large enough for a message. Must be called from {@link ConnectionHandler#onRead}; the
+     * buffer is replaced after the callback returns.
+     *
+     * @param capacity Required capacity in bytes.
+     */
+    public void ensureReadCapacity(int capacity) {
+        requiredCapacity = Math.max(requiredCapacity, capacity);
+    }
+
+    /**
+     * Stop reading from the socket. Must be called from {@link ConnectionHandler#onRead}; the bytes left in the
+     * buffer are kept and passed again once reading is resumed.
+     */
+    public void suspendRead() {
+        if (!readSuspended) {
+            readSuspended = true;
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Resume reading after {@link #suspendRead()}. May be called from any thread; the bytes kept in the buffer are
+     * passed to the handler again on the event loop.
+     */
+    public void resumeRead() {
+        resumeRequested = true;
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            server.scheduleFlush(this);
+        }
+    }
+
+    void read() throws IOException {
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            abort();
+            return;
+        }
+        if (read > 0) {
+            process();
+        }
+    }
+
+    private void process() {
+        readBuffer.flip();
+        handler.onRead(this, readBuffer);
+        if (closed) {
+            return;
+        }
+        readBuffer.compact();
+        if (requiredCapacity > readBuffer.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocate(requiredCapacity);
+            grown.put(readBuffer.flip());
+            server.getBufferPool().release(readBuffer);
+            readBuffer = grown;
+        } else if (readBuffer.position() == 0 && !readBuffer.isDirect()) {
+            server.getBufferPool().release(readBuffer);
+            readBuffer = server.getBufferPool().acquire();
+        }
+        requiredCapacity = 0;
+    }
+
+    void flush() throws IOException {
+        flushScheduled.set(false);
+        if (closed) {
+            return;
+        }
+        if (resumeRequested) {
+            resume();
+            if (closed) {
+                return;
+            }
+        }
+        ByteBuffer buffer;
+        while ((buffer = outbound.poll()) != null) {
+            writing.add(buffer);
+        }
+        while (!writing.isEmpty()) {
+            int count = 0;
+            while (count < MAX_GATHER && !writing.isEmpty()) {
+                gather[count++] = writing.poll();
+            }
+            channel.write(gather, 0, count);
+            int sent = 0;
+            while (sent < count && !gather[sent].hasRemaining()) {
+                server.getBufferPool().release(gather[sent]);
+                gather[sent++] = null;
+            }
+            if (sent < count) {
+                for (int i = count - 1; i >= sent; i--) {
+                    writing.addFirst(gather[i]);
+                    gather[i] = null;
+                }
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+        if (closeRequested) {
+            abort();
+            return;
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    private void resume() {
+        resumeRequested = false;
+        if (!readSuspended) {
+            return;
+        }
+        readSuspended = false;
+        key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        if (readBuffer.position() > 0) {
+            process();
+        }
+    }
+
+    void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LoggerFactory.getLogger(Connection.class).debug("Failed to close connection {}", remoteAddress, e);
+        }
+        BufferPool pool = server.getBufferPool();
+        pool.release(readBuffer);
+        readBuffer = null;
+        ByteBuffer buffer;
+        while ((buffer = writing.poll()) != null) {
+            pool.release(buffer);
+        }
+        while ((buffer = outbound.poll()) != null) {
+            pool.release(buffer);
+        }
+        if (handler != null) {
+            handler.onClose(this);
+        }
+    }
+}
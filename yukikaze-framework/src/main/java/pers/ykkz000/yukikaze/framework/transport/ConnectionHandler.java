@@ -0,0 +1,46 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.transport;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Protocol of the connections of a {@link NioServer}. One handler is created per connection and all its callbacks
+ * run on the event loop thread, so they must not block.
+ *
+ * @author ykkz000
+ */
+public interface ConnectionHandler {
+    /**
+     * Consume received bytes. Complete messages should be read from the buffer, a trailing partial message should be
+     * left in it and is passed again with the following bytes. If a message does not fit the buffer, call
+     * {@link Connection#ensureReadCapacity(int)}.
+     *
+     * @param connection Connection.
+     * @param buffer     Received bytes between position and limit.
+     */
+    void onRead(Connection connection, ByteBuffer buffer);
+
+    /**
+     * Called once when the connection is closed.
+     *
+     * @param connection Connection.
+     */
+    default void onClose(Connection connection) {
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.transport;
+
+import pers.ykkz000.yukikaze.framework.exception.ResponseErrorException;
+import pers.ykkz000.yukikaze.framework.route.ByteBufferArguments;
+import pers.ykkz000.yukikaze.framework.route.CommandRouter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Handler of HTTP/1.1 requests. Request lines and headers are scanned in place in the read buffer; only the request
+ * target is copied, percent-decoded, so its query parameters stay valid while the command runs. Pipelined requests
+ * run concurrently and their responses are sent in request order; reading stops while too many of them are pending.
+ *
+ * @author ykkz000
+ */
+class HttpCommandHandler implements ConnectionHandler {
+    private static final byte[] GET = ascii("GET");
+    private static final byte[] HEAD = ascii("HEAD");
+    private static final byte[] HTTP_1_1 = ascii("HTTP/1.1");
+    private static final byte[] HTTP_1_0 = ascii("HTTP/1.0");
+    private static final byte[] CONNECTION = ascii("connection");
+    private static final byte[] ACCEPT_ENCODING = ascii("accept-encoding");
+    private static final byte[] CONTENT_LENGTH = ascii("content-length");
+    private static final byte[] TRANSFER_ENCODING = ascii("transfer-encoding");
+    private static final byte[] CLOSE = ascii("close");
+    private static final byte[] KEEP_ALIVE = ascii("keep-alive");
+    private static final byte[] GZIP = ascii("gzip");
+    private static final byte[] CHUNKED = ascii("chunked");
+    private final CommandRouter router;
+    private final HttpResponses responses;
+    private final byte[] basePath;
+    private final int maxHeaderSize;
+    private final int maxBodySize;
+    private final int maxPending;
+    private final Queue<Exchange> exchanges = new ArrayDeque<>();
+    private boolean closing;
+    private boolean suspended;
+
+    HttpCommandHandler(CommandRouter router, HttpResponses responses, String basePath, int maxHeaderSize, int maxBodySize, int maxPending) {
+        this.router = router;
+        this.responses = responses;
+        this.basePath = basePath.getBytes(StandardCharsets.UTF_8);
+        this.maxHeaderSize = maxHeaderSize;
+        this.maxBodySize = maxBodySize;
+        this.maxPending = maxPending;
+    }
+
+    @Override
+    public void onRead(Connection connection, ByteBuffer buffer) {
+        while (!closing && buffer.hasRemaining()) {
+            synchronized (exchanges) {
+                if (exchanges.size() >= maxPending) {
+                    suspended = true;
+                    connection.suspendRead();
+                    return;
+                }
+            }
+            int start = buffer.position();
+            int headerEnd = findHeaderEnd(buffer, start, Math.min(buffer.limit(), start + maxHeaderSize));
+            if (headerEnd < 0) {
+                if (buffer.remaining() >= maxHeaderSize) {
+                    reject(connection, new Exchange(true, false), 431, "Request header fields too large");
+                } else {
+                    connection.ensureReadCapacity(maxHeaderSize);
+                }
+                return;
+            }
+            if (!handle(connection, buffer, start, headerEnd)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Handle the request whose header is between the given offsets.
+     *
+     * @return False if more bytes are needed for the body of the request.
+     */
+    private boolean handle(Connection connection, ByteBuffer buffer, int start, int headerEnd) {
+        int lineEnd = indexOf(buffer, start, headerEnd, '\r');
+        int methodEnd = indexOf(buffer, start, lineEnd, ' ');
+        int targetEnd = methodEnd < 0 ? -1 : indexOf(buffer, methodEnd + 1, lineEnd, ' ');
+        if (targetEnd < 0) {
+            buffer.position(headerEnd);
+            reject(connection, new Exchange(true, false), 400, "Malformed request line");
+            return true;
+        }
+        boolean http11 = equals(buffer, targetEnd + 1, lineEnd, HTTP_1_1);
+        if (!http11 && !equals(buffer, targetEnd + 1, lineEnd, HTTP_1_0)) {
+            buffer.position(headerEnd);
+            reject(connection, new Exchange(true, false), 505, "HTTP version not supported");
+            return true;
+        }
+        boolean keepAlive = http11;
+        boolean gzip = false;
+        boolean chunked = false;
+        long contentLength = 0;
+        for (int line = lineEnd + 2; line < headerEnd - 2; ) {
+            int end = indexOf(buffer, line, headerEnd, '\r');
+            int colon = indexOf(buffer, line, end, ':');
+            if (colon < 0) {
+                buffer.position(headerEnd);
+                reject(connection, new Exchange(http11, false), 400, "Malformed header");
+                return true;
+            }
+            int valueStart = colon + 1;
+            if (equalsIgnoreCase(buffer, line, colon, CONNECTION)) {
+                if (containsIgnoreCase(buffer, valueStart, end, CLOSE)) {
+                    keepAlive = false;
+                } else if (containsIgnoreCase(buffer, valueStart, end, KEEP_ALIVE)) {
+                    keepAlive = true;
+                }
+            } else if (equalsIgnoreCase(buffer, line, colon, ACCEPT_ENCODING)) {
+                gzip = containsIgnoreCase(buffer, valueStart, end, GZIP);
+            } else if (equalsIgnoreCase(buffer, line, colon, CONTENT_LENGTH)) {
+                contentLength = parseLength(buffer, valueStart, end);
+            } else if (equalsIgnoreCase(buffer, line, colon, TRANSFER_ENCODING)) {
+                chunked |= containsIgnoreCase(buffer, valueStart, end, CHUNKED);
+            }
+            line = end + 2;
+        }
+        Exchange exchange = new Exchange(http11, keepAlive);
+        exchange.gzip = gzip;
+        exchange.head = equals(buffer, start, methodEnd, HEAD);
+        if (chunked || contentLength < 0 || contentLength > maxBodySize) {
+            buffer.position(headerEnd);
+            exchange.keepAlive = false;
+            reject(connection, exchange, chunked ? 501 : 413, chunked ? "Chunked requests are not supported" : "Request body too large");
+            return true;
+        }
+        int requestEnd = headerEnd + (int) contentLength;
+        if (requestEnd > buffer.limit()) {
+            connection.ensureReadCapacity(requestEnd - start);
+            return false;
+        }
+        buffer.position(requestEnd);
+        if (!exchange.head && !equals(buffer, start, methodEnd, GET)) {
+            reject(connection, exchange, 405, "Method not allowed");
+            return true;
+        }
+        dispatch(connection, buffer, methodEnd + 1, targetEnd, exchange);
+        return true;
+    }
+
+    private void dispatch(Connection connection, ByteBuffer buffer, int targetStart, int targetEnd, Exchange exchange) {
+        if (!startsWith(buffer, targetStart, targetEnd, basePath)) {
+            reject(connection, exchange, 404, "Command not found");
+            return;
+        }
+        int pathStart = targetStart + basePath.length;
+        int queryStart = indexOf(buffer, pathStart, targetEnd, '?');
+        int pathEnd = queryStart < 0 ? targetEnd : queryStart;
+        byte[] decoded = new byte[targetEnd - pathStart];
+        String command;
+        ByteBufferArguments args = new ByteBufferArguments(ByteBuffer.wrap(decoded));
+        try {
+            command = new String(decoded, 0, decode(buffer, pathStart, pathEnd, decoded, 0, false), StandardCharsets.UTF_8);
+            int length = 0;
+            for (int pair = pathEnd + 1; pair < targetEnd; ) {
+                int pairEnd = indexOf(buffer, pair, targetEnd, '&');
+                if (pairEnd < 0) {
+                    pairEnd = targetEnd;
+                }
+                if (pairEnd > pair) {
+                    int equals = indexOf(buffer, pair, pairEnd, '=');
+                    int nameEnd = equals < 0 ? pairEnd : equals;
+                    int nameStart = length;
+                    length = decode(buffer, pair, nameEnd, decoded, length, true);
+                    int valueStart = length;
+                    length = equals < 0 ? length : decode(buffer, equals + 1, pairEnd, decoded, length, true);
+                    args.add(nameStart, valueStart, valueStart, length);
+                }
+                pair = pairEnd + 1;
+            }
+        } catch (IllegalArgumentException e) {
+            reject(connection, exchange, 400, "Malformed request target");
+            return;
+        }
+        enqueue(exchange);
+        router.executeAsync(command, args).whenComplete((result, error) -> {
+            if (error == null) {
+                complete(connection, exchange, 200, result);
+            } else {
+                ResponseErrorException responseError = CommandRouter.toResponseError(error);
+                complete(connection, exchange, responseError.getStatus(), responseError.getMessage());
+            }
+        });
+    }
+
+    private void reject(Connection connection, Exchange exchange, int status, String message) {
+        enqueue(exchange);
+        complete(connection, exchange, status, message);
+    }
+
+    private void enqueue(Exchange exchange) {
+        if (!exchange.keepAlive) {
+            closing = true;
+        }
+        synchronized (exchanges) {
+            exchanges.add(exchange);
+        }
+    }
+
+    private void complete(Connection connection, Exchange exchange, int status, String body) {
+        ByteBuffer response = responses.encode(status, body, exchange.http11, exchange.keepAlive, exchange.gzip, exchange.head);
+        synchronized (exchanges) {
+            exchange.response = response;
+            Exchange next;
+            while ((next = exchanges.peek()) != null && next.response != null) {
+                exchanges.poll();
+                connection.write(next.response);
+                if (!next.keepAlive) {
+                    connection.close();
+                }
+            }
+            if (suspended && exchanges.size() < maxPending) {
+                suspended = false;
+                connection.resumeRead();
+            }
+        }
+    }
+
+    private static int decode(ByteBuffer buffer, int from, int to, byte[] out, int offset, boolean form) {
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == '%') {
+                if (i + 2 >= to) {
+                    throw new IllegalArgumentException("Truncated percent-encoding");
+                }
+                b = (byte) (hex(buffer.get(i + 1)) << 4 | hex(buffer.get(i + 2)));
+                i += 2;
+            } else if (b == '+' && form) {
+                b = ' ';
+            }
+            out[offset++] = b;
+        }
+        return offset;
+    }
+
+    private static int hex(byte b) {
+        int value = Character.digit(b, 16);
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid percent-encoding");
+        }
+        return value;
+    }
+
+    private static long parseLength(ByteBuffer buffer, int from, int to) {
+        long value = 0;
+        boolean digits = false;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                digits = true;
+                if (value > Integer.MAX_VALUE) {
+                    return Long.MAX_VALUE;
+                }
+            } else if (b != ' ' && b != '\t') {
+                return -1;
+            }
+        }
+        return digits ? value : -1;
+    }
+
+    private static int findHeaderEnd(ByteBuffer buffer, int from, int to) {
+        for (int i = from + 3; i < to; i++) {
+            if (buffer.get(i) == '\n' && buffer.get(i - 1) == '\r' && buffer.get(i - 2) == '\n' && buffer.get(i - 3) == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, int to, char c) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equals(ByteBuffer buffer, int from, int to, byte[] expected) {
+        return to - from == expected.length && startsWith(buffer, from, to, expected);
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int from, int to, byte[] expected) {
+        if (to - from < expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(from + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(ByteBuffer buffer, int from, int to, byte[] lowerCase) {
+        return to - from == lowerCase.length && regionMatchesIgnoreCase(buffer, from, lowerCase);
+    }
+
+    private static boolean containsIgnoreCase(ByteBuffer buffer, int from, int to, byte[] lowerCase) {
+        for (int i = from; i <= to - lowerCase.length; i++) {
+            if (regionMatchesIgnoreCase(buffer, i, lowerCase)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatchesIgnoreCase(ByteBuffer buffer, int from, byte[] lowerCase) {
+        for (int i = 0; i < lowerCase.length; i++) {
+            byte b = buffer.get(from + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != lowerCase[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static class Exchange {
+        private final boolean http11;
+        private boolean keepAlive;
+        private boolean gzip;
+        private boolean head;
+        private ByteBuffer response;
+
+        private Exchange(boolean http11, boolean keepAlive) {
+            this.http11 = http11;
+            this.keepAlive = keepAlive;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.transport;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encoder of HTTP/1.1 responses into buffers of a {@link BufferPool}. Status lines and fixed header fields are
+ * encoded once; bodies are compressed with gzip when the client accepts it and they reach a size threshold.
+ *
+ * @author ykkz000
+ */
+class HttpResponses {
+    private static final byte[] CRLF = ascii("\r\n");
+    private static final byte[] CONTENT_TYPE_JSON = ascii("Content-Type: application/json; charset=utf-8\r\n");
+    private static final byte[] CONTENT_TYPE_TEXT = ascii("Content-Type: text/plain; charset=utf-8\r\n");
+    private static final byte[] CONTENT_ENCODING_GZIP = ascii("Content-Encoding: gzip\r\nVary: Accept-Encoding\r\n");
+    private static final byte[] CONNECTION_CLOSE = ascii("Connection: close\r\n");
+    private static final byte[] CONNECTION_KEEP_ALIVE = ascii("Connection: keep-alive\r\n");
+    private static final byte[] CONTENT_LENGTH = ascii("Content-Length: ");
+    private static final int MAX_FIXED_HEADER_LENGTH = 256;
+    private static final byte[] EMPTY = new byte[0];
+    private final BufferPool pool;
+    private final int gzipThreshold;
+    private final Map<Integer, byte[]> statusLines = new ConcurrentHashMap<>();
+
+    /**
+     * Create an encoder.
+     *
+     * @param pool          Pool of the response buffers.
+     * @param gzipThreshold Smallest body compressed in bytes, negative to never compress.
+     */
+    HttpResponses(BufferPool pool, int gzipThreshold) {
+        this.pool = pool;
+        this.gzipThreshold = gzipThreshold;
+    }
+
+    ByteBuffer encode(int status, String body, boolean http11, boolean keepAlive, boolean acceptsGzip, boolean head) {
+        byte[] content = body == null ? EMPTY : body.getBytes(StandardCharsets.UTF_8);
+        boolean gzip = acceptsGzip && gzipThreshold >= 0 && content.length >= gzipThreshold;
+        if (gzip) {
+            content = Gzip.compress(content);
+        }
+        byte[] statusLine = statusLines.computeIfAbsent(status, HttpResponses::statusLine);
+        int length = statusLine.length + MAX_FIXED_HEADER_LENGTH + (head ? 0 : content.length);
+        ByteBuffer buffer = length <= pool.getBufferSize() ? pool.acquire() : ByteBuffer.allocate(length);
+        buffer.put(statusLine);
+        buffer.put(status == 200 && isJson(body) ? CONTENT_TYPE_JSON : CONTENT_TYPE_TEXT);
+        if (gzip) {
+            buffer.put(CONTENT_ENCODING_GZIP);
+        }
+        if (!keepAlive) {
+            buffer.put(CONNECTION_CLOSE);
+        } else if (!http11) {
+            buffer.put(CONNECTION_KEEP_ALIVE);
+        }
+        buffer.put(CONTENT_LENGTH);
+        putDecimal(buffer, content.length);
+        buffer.put(CRLF).put(CRLF);
+        if (!head) {
+            buffer.put(content);
+        }
+        return buffer.flip();
+    }
+
+    private static boolean isJson(String body) {
+        if (body == null || body.isEmpty()) {
+            return false;
+        }
+        char first = body.charAt(0);
+        return first == '{' || first == '[' || first == '"';
+    }
+
+    private static void putDecimal(ByteBuffer buffer, int value) {
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int end = buffer.position() + digits;
+        for (int i = end - 1; i >= buffer.position(); i--) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
+    }
+
+    private static byte[] statusLine(int status) {
+        return ascii("HTTP/1.1 " + status + " " + reasonPhrase(status) + "\r\n");
+    }
+
+    private static String reasonPhrase(int status) {
+        return switch (status) {
+            case 200 -> "OK";
+            case 400 -> "Bad Request";
+            case 401 -> "Unauthorized";
+            case 403 -> "Forbidden";
+            case 404 -> "Not Found";
+            case 405 -> "Method Not Allowed";
+            case 408 -> "Request Timeout";
+            case 409 -> "Conflict";
+            case 413 -> "Content Too Large";
+            case 429 -> "Too Many Requests";
+            case 431 -> "Request Header Fields Too Large";
+            case 500 -> "Internal Server Error";
+            case 501 -> "Not Implemented";
+            case 503 -> "Service Unavailable";
+            case 505 -> "HTTP Version Not Supported";
+            default -> "Status " + status;
+        };
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
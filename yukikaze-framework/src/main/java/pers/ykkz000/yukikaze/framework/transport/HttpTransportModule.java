@@ -0,0 +1,80 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.transport;
+
+import lombok.Getter;
+import pers.ykkz000.yukikaze.framework.ApplicationContext;
+import pers.ykkz000.yukikaze.framework.api.ModuleStarter;
+import pers.ykkz000.yukikaze.framework.property.PropertyStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Module serving the commands of the {@link pers.ykkz000.yukikaze.framework.route.CommandRouter} over HTTP/1.1.
+ * {@code GET /command?name=value} executes the command, the controller prefix followed by the command of the
+ * handler, with the query parameters as arguments; the status of the response is the status of the
+ * {@link pers.ykkz000.yukikaze.framework.exception.ResponseErrorException}. Enable it with
+ * {@code @EnableModule(HttpTransportModule.class)} and configure it with the properties
+ * <ul>
+ *     <li>{@code yukikaze.http.host}: address to bind, defaults to all interfaces;</li>
+ *     <li>{@code yukikaze.http.port}: port to bind, defaults to {@value #DEFAULT_PORT}, 0 for any free port;</li>
+ *     <li>{@code yukikaze.http.base-path}: path before the commands, defaults to {@code /};</li>
+ *     <li>{@code yukikaze.http.buffer-size}: size of the pooled direct buffers, defaults to 16 KiB;</li>
+ *     <li>{@code yukikaze.http.max-header-size}: largest accepted request header, defaults to 8 KiB;</li>
+ *     <li>{@code yukikaze.http.max-body-size}: largest accepted request body, defaults to 1 MiB;</li>
+ *     <li>{@code yukikaze.http.max-pipelined-requests}: pending pipelined requests of a connection above which no
+ *     more requests are read, defaults to 64;</li>
+ *     <li>{@code yukikaze.http.gzip-threshold}: smallest response body compressed, defaults to 1 KiB, negative
+ *     to disable compression.</li>
+ * </ul>
+ *
+ * @author ykkz000
+ */
+public class HttpTransportModule implements ModuleStarter {
+    public static final int DEFAULT_PORT = 8080;
+    private static final String PROPERTY_PREFIX = "yukikaze.http";
+    @Getter
+    private NioServer server;
+
+    @Override
+    public void start(ApplicationContext context) {
+        PropertyStore properties = context.getProperties().subtree(PROPERTY_PREFIX);
+        String host = properties.getString("host", "0.0.0.0");
+        int port = properties.getInt("port", DEFAULT_PORT);
+        String basePath = properties.getString("base-path", "/");
+        if (!basePath.endsWith("/")) {
+            basePath += "/";
+        }
+        int bufferSize = properties.getInt("buffer-size", 16 * 1024);
+        int maxHeaderSize = properties.getInt("max-header-size", 8 * 1024);
+        int maxBodySize = properties.getInt("max-body-size", 1024 * 1024);
+        int maxPending = Math.max(1, properties.getInt("max-pipelined-requests", 64));
+        BufferPool pool = new BufferPool(bufferSize, 1024);
+        HttpResponses responses = new HttpResponses(pool, properties.getInt("gzip-threshold", 1024));
+        String path = basePath;
+        server = new NioServer(new InetSocketAddress(host, port), pool,
+                connection -> new HttpCommandHandler(context.getCommandRouter(), responses, path, maxHeaderSize, maxBodySize, maxPending), "yukikaze-http");
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start HTTP transport on " + host + ":" + port, e);
+        }
+    }
+}
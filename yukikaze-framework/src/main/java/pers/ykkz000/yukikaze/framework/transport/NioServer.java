@@ -0,0 +1,215 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.transport;
+
+import lombok.Getter;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * TCP server running all its connections on one selector thread. Protocols are plugged in as
+ * {@link ConnectionHandler}s; they parse requests on the event loop and hand the work to other threads, whose
+ * responses are queued on the {@link Connection} and sent by the event loop.
+ *
+ * @author ykkz000
+ */
+public class NioServer implements Closeable {
+    private final InetSocketAddress address;
+    @Getter
+    private final BufferPool bufferPool;
+    private final Function<Connection, ConnectionHandler> handlerFactory;
+    private final String name;
+    private final Queue<Connection> pendingFlushes = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * Create a server.
+     *
+     * @param address        Address to bind, port 0 for any free port.
+     * @param bufferPool     Pool of the read and write buffers.
+     * @param handlerFactory Factory of the handler of each accepted connection.
+     * @param name           Name of the event loop thread.
+     */
+    public NioServer(InetSocketAddress address, BufferPool bufferPool, Function<Connection, ConnectionHandler> handlerFactory, String name) {
+        this.address = address;
+        this.bufferPool = bufferPool;
+        this.handlerFactory = handlerFactory;
+        this.name = name;
+    }
+
+    /**
+     * Bind the address and start the event loop. The event loop thread is not a daemon thread, so a started server
+     * keeps the application running until it is closed.
+     *
+     * @throws IOException Thrown if the address cannot be bound.
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            throw new IllegalStateException("Server " + name + " is already started");
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(address, 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        thread = new Thread(this::loop, name);
+        thread.start();
+        LoggerFactory.getLogger(NioServer.class).info("Server {} listening on {}", name, getLocalAddress());
+    }
+
+    /**
+     * Get the bound address.
+     *
+     * @return Local address, useful when the server was bound to port 0.
+     * @throws IOException Thrown if the server is not bound.
+     */
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Stop the event loop and close all connections.
+     */
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    void scheduleFlush(Connection connection) {
+        pendingFlushes.offer(connection);
+        if (Thread.currentThread() != thread) {
+            selector.wakeup();
+        }
+    }
+
+    private void loop() {
+        try {
+            while (running) {
+                if (pendingFlushes.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.selectNow();
+                }
+                Connection connection;
+                while ((connection = pendingFlushes.poll()) != null) {
+                    try {
+                        connection.flush();
+                    } catch (IOException | RuntimeException e) {
+                        LoggerFactory.getLogger(NioServer.class).debug("Failed to write to {}", connection.getRemoteAddress(), e);
+                        connection.abort();
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid()) {
+                        handle(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            LoggerFactory.getLogger(NioServer.class).error("Event loop of server {} failed", name, e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            LoggerFactory.getLogger(NioServer.class).debug("Connection {} failed", connection.getRemoteAddress(), e);
+            connection.abort();
+        }
+    }
+
+    private void accept() {
+        SocketChannel channel = null;
+        try {
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                Connection connection = new Connection(this, channel, key);
+                key.attach(connection);
+                connection.setHandler(handlerFactory.apply(connection));
+            }
+        } catch (IOException | RuntimeException e) {
+            LoggerFactory.getLogger(NioServer.class).warn("Failed to accept a connection on server {}", name, e);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Already failing.
+                }
+            }
+        }
+    }
+
+    private void shutdown() {
+        running = false;
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection connection) {
+                connection.abort();
+            }
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            LoggerFactory.getLogger(NioServer.class).debug("Failed to close server {}", name, e);
+        }
+        LoggerFactory.getLogger(NioServer.class).info("Server {} stopped", name);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.transport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.LoggerFactory;
+import pers.ykkz000.yukikaze.framework.codec.BinaryCommandCodec;
+import pers.ykkz000.yukikaze.framework.codec.CommandCodec;
+import pers.ykkz000.yukikaze.framework.exception.ResponseErrorException;
+import pers.ykkz000.yukikaze.framework.route.CommandRouter;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client of the {@link TcpTransportModule}. Requests are pipelined on one connection: any number may be in flight,
+ * and a reader thread completes them as their responses arrive. Instances are thread-safe.
+ *
+ * @author ykkz000
+ */
+public class TcpCommandClient implements Closeable {
+    private final CommandCodec codec;
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final Map<Long, CompletableFuture<Object>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private volatile IOException failure;
+
+    /**
+     * Connect to a server with the {@link BinaryCommandCodec}.
+     *
+     * @param address Address of the server.
+     * @throws IOException Thrown if the connection fails.
+     */
+    public TcpCommandClient(InetSocketAddress address) throws IOException {
+        this(address, new BinaryCommandCodec(new ObjectMapper()));
+    }
+
+    /**
+     * Connect to a server.
+     *
+     * @param address Address of the server.
+     * @param codec   Codec of the arguments and results, must be supported by the server.
+     * @throws IOException Thrown if the connection fails.
+     */
+    public TcpCommandClient(InetSocketAddress address, CommandCodec codec) throws IOException {
+        this.codec = codec;
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(address);
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        Thread reader = new Thread(this::readResponses, "yukikaze-tcp-client");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Send a command without waiting for its response.
+     *
+     * @param command Command.
+     * @param args    Arguments of the command, with values of types supported by the codec.
+     * @return Future of the result decoded by the codec, completed exceptionally with
+     * {@link ResponseErrorException} if the server responds with an error, or with {@link IOException} if the
+     * request cannot be encoded or the connection fails.
+     */
+    public CompletableFuture<Object> executeAsync(String command, Map<String, ?> args) {
+        long requestId = nextRequestId.getAndIncrement();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        pending.put(requestId, future);
+        try {
+            ByteArrayOutputStream encodedArgs = new ByteArrayOutputStream();
+            codec.encodeArguments(args, encodedArgs);
+            synchronized (out) {
+                if (failure != null) {
+                    throw failure;
+                }
+                TcpFrame.writeRequest(out, requestId, codec, command, encodedArgs.toByteArray());
+                out.flush();
+            }
+        } catch (IOException e) {
+            pending.remove(requestId);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Send a command and wait for its result.
+     *
+     * @param command Command.
+     * @param args    Arguments of the command, with values of types supported by the codec.
+     * @return Result of the command decoded by the codec.
+     * @throws ResponseErrorException Thrown if the server responds with an error, or with status 500 if the
+     *                                connection fails.
+     */
+    public Object execute(String command, Map<String, ?> args) throws ResponseErrorException {
+        try {
+            return executeAsync(command, args).join();
+        } catch (RuntimeException e) {
+            throw CommandRouter.toResponseError(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private void readResponses() {
+        try {
+            while (true) {
+                int length = in.readInt();
+                if (length < TcpFrame.RESPONSE_HEADER_LENGTH) {
+                    throw new IOException("Malformed response of length " + length);
+                }
+                long requestId = in.readLong();
+                int status = in.readShort() & 0xffff;
+                byte[] body = new byte[length - TcpFrame.RESPONSE_HEADER_LENGTH];
+                in.readFully(body);
+                CompletableFuture<Object> future = pending.remove(requestId);
+                if (future == null) {
+                    LoggerFactory.getLogger(TcpCommandClient.class).warn("Response to unknown request {}", requestId);
+                } else if (status == 200) {
+                    try {
+                        future.complete(codec.decodeResult(ByteBuffer.wrap(body)));
+                    } catch (IOException | RuntimeException e) {
+                        future.completeExceptionally(e);
+                    }
+                } else {
+                    future.completeExceptionally(new ResponseErrorException(status, new String(body, StandardCharsets.UTF_8)));
+                }
+            }
+        } catch (IOException e) {
+            synchronized (out) {
+                failure = e instanceof EOFException ? new EOFException("Connection closed by server") : e;
+            }
+            pending.values().forEach(future -> future.completeExceptionally(failure));
+            pending.clear();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.transport;
+
+import pers.ykkz000.yukikaze.framework.codec.CommandCodec;
+import pers.ykkz000.yukikaze.framework.exception.ResponseErrorException;
+import pers.ykkz000.yukikaze.framework.route.CommandArguments;
+import pers.ykkz000.yukikaze.framework.route.CommandRouter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Handler of {@link TcpFrame} requests. Each complete frame is copied out of the read buffer, so its arguments stay
+ * valid while the command runs, and its arguments are decoded by the {@link CommandCodec} named in the frame, which
+ * also encodes the result. A frame that fails to decode is answered with a 400 error without closing the connection.
+ *
+ * @author ykkz000
+ */
+class TcpCommandHandler implements ConnectionHandler {
+    private final CommandRouter router;
+    private final CommandCodec[] codecs;
+    private final BufferPool pool;
+    private final int maxFrameLength;
+
+    TcpCommandHandler(CommandRouter router, CommandCodec[] codecs, BufferPool pool, int maxFrameLength) {
+        this.router = router;
+        this.codecs = codecs;
+        this.pool = pool;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    public void onRead(Connection connection, ByteBuffer buffer) {
+        while (buffer.remaining() >= TcpFrame.LENGTH_SIZE) {
+            int length = buffer.getInt(buffer.position());
+            if (length < TcpFrame.REQUEST_HEADER_LENGTH || length > maxFrameLength) {
+                connection.close();
+                return;
+            }
+            if (buffer.remaining() < TcpFrame.LENGTH_SIZE + length) {
+                connection.ensureReadCapacity(TcpFrame.LENGTH_SIZE + length);
+                return;
+            }
+            byte[] frame = new byte[length];
+            buffer.position(buffer.position() + TcpFrame.LENGTH_SIZE).get(frame);
+            dispatch(connection, ByteBuffer.wrap(frame));
+        }
+    }
+
+    private void dispatch(Connection connection, ByteBuffer frame) {
+        long requestId = frame.getLong(0);
+        CommandCodec codec = codecs[frame.get(8) & 0xff];
+        if (codec == null) {
+            connection.write(TcpFrame.encodeError(pool, requestId, 415, "Unsupported codec " + (frame.get(8) & 0xff)));
+            return;
+        }
+        String command;
+        CommandArguments args;
+        try {
+            int commandLength = frame.getShort(9) & 0xffff;
+            command = new String(frame.array(), TcpFrame.REQUEST_HEADER_LENGTH, commandLength, StandardCharsets.UTF_8);
+            args = codec.decodeArguments(frame.position(TcpFrame.REQUEST_HEADER_LENGTH + commandLength));
+        } catch (RuntimeException e) {
+            connection.write(TcpFrame.encodeError(pool, requestId, 400, "Malformed request: " + e.getMessage()));
+            return;
+        }
+        router.invokeAsync(command, args).whenComplete((result, error) -> {
+            if (error == null) {
+                try {
+                    connection.write(TcpFrame.encodeResult(pool, requestId, codec, result));
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    error = new ResponseErrorException(500, e.getMessage(), e);
+                }
+            }
+            ResponseErrorException responseError = CommandRouter.toResponseError(error);
+            connection.write(TcpFrame.encodeError(pool, requestId, responseError.getStatus(), responseError.getMessage()));
+        });
+    }
+}
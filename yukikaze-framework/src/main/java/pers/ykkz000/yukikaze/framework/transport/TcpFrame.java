@@ -0,0 +1,79 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.transport;
+
+import pers.ykkz000.yukikaze.framework.codec.CommandCodec;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of the frames of the TCP transport. Every frame starts with the length of the rest of the frame as a
+ * 32-bit integer, all integers are big-endian and all strings are UTF-8.
+ * <pre>
+ * request:  length, request id (int64), codec id (uint8), command length (uint16), command, encoded arguments
+ * response: length, request id (int64), status (int16), body
+ * </pre>
+ * The status is 200 on success with the result encoded by the {@link CommandCodec} of the request as body,
+ * otherwise the status of the {@link pers.ykkz000.yukikaze.framework.exception.ResponseErrorException} with its
+ * message as body. Requests may be pipelined; responses carry the id of their request and are sent as soon as
+ * they complete.
+ *
+ * @author ykkz000
+ */
+final class TcpFrame {
+    static final int LENGTH_SIZE = 4;
+    static final int REQUEST_HEADER_LENGTH = 11;
+    static final int RESPONSE_HEADER_LENGTH = 10;
+    private static final byte[] EMPTY = new byte[0];
+
+    private TcpFrame() {
+    }
+
+    static ByteBuffer encodeResult(BufferPool pool, long requestId, CommandCodec codec, Object result) throws IOException {
+        ByteBufferOutputStream out = new ByteBufferOutputStream(pool);
+        out.skip(LENGTH_SIZE + RESPONSE_HEADER_LENGTH);
+        try {
+            codec.encodeResult(result, out);
+        } catch (IOException | RuntimeException e) {
+            out.discard();
+            throw e;
+        }
+        ByteBuffer buffer = out.buffer();
+        return buffer.putInt(0, buffer.position() - LENGTH_SIZE).putLong(LENGTH_SIZE, requestId).putShort(LENGTH_SIZE + 8, (short) 200).flip();
+    }
+
+    static ByteBuffer encodeError(BufferPool pool, long requestId, int status, String message) {
+        byte[] bytes = message == null ? EMPTY : message.getBytes(StandardCharsets.UTF_8);
+        int length = RESPONSE_HEADER_LENGTH + bytes.length;
+        ByteBuffer buffer = LENGTH_SIZE + length <= pool.getBufferSize() ? pool.acquire() : ByteBuffer.allocate(LENGTH_SIZE + length);
+        return buffer.putInt(length).putLong(requestId).putShort((short) status).put(bytes).flip();
+    }
+
+    static void writeRequest(DataOutputStream out, long requestId, CommandCodec codec, String command, byte[] args) throws IOException {
+        byte[] commandBytes = command.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(REQUEST_HEADER_LENGTH + commandBytes.length + args.length);
+        out.writeLong(requestId);
+        out.writeByte(codec.getId());
+        out.writeShort(commandBytes.length);
+        out.write(commandBytes);
+        out.write(args);
+    }
+}
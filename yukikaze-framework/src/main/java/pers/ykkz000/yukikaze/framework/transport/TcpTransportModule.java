@@ -0,0 +1,66 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package pers.ykkz000.yukikaze.framework.transport;
+
+import lombok.Getter;
+import pers.ykkz000.yukikaze.framework.ApplicationContext;
+import pers.ykkz000.yukikaze.framework.api.ModuleStarter;
+import pers.ykkz000.yukikaze.framework.codec.CommandCodec;
+import pers.ykkz000.yukikaze.framework.property.PropertyStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Module serving the commands of the {@link pers.ykkz000.yukikaze.framework.route.CommandRouter} over TCP with the
+ * {@link TcpFrame} protocol, with arguments and results in the {@link CommandCodec} chosen by each request.
+ * Enable it with {@code @EnableModule(TcpTransportModule.class)} and configure it with the properties
+ * <ul>
+ *     <li>{@code yukikaze.tcp.host}: address to bind, defaults to all interfaces;</li>
+ *     <li>{@code yukikaze.tcp.port}: port to bind, defaults to {@value #DEFAULT_PORT}, 0 for any free port;</li>
+ *     <li>{@code yukikaze.tcp.buffer-size}: size of the pooled direct buffers, defaults to 64 KiB;</li>
+ *     <li>{@code yukikaze.tcp.max-frame-size}: largest accepted request, defaults to 16 MiB.</li>
+ * </ul>
+ *
+ * @author ykkz000
+ */
+public class TcpTransportModule implements ModuleStarter {
+    public static final int DEFAULT_PORT = 7420;
+    private static final String PROPERTY_PREFIX = "yukikaze.tcp";
+    @Getter
+    private NioServer server;
+
+    @Override
+    public void start(ApplicationContext context) {
+        PropertyStore properties = context.getProperties().subtree(PROPERTY_PREFIX);
+        String host = properties.getString("host", "0.0.0.0");
+        int port = properties.getInt("port", DEFAULT_PORT);
+        int bufferSize = properties.getInt("buffer-size", 64 * 1024);
+        int maxFrameSize = properties.getInt("max-frame-size", 16 * 1024 * 1024);
+        BufferPool pool = new BufferPool(bufferSize, 1024);
+        CommandCodec[] codecs = CommandCodec.load(context.getObjectMapper());
+        server = new NioServer(new InetSocketAddress(host, port), pool,
+                connection -> new TcpCommandHandler(context.getCommandRouter(), codecs, pool, maxFrameSize), "yukikaze-tcp");
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start TCP transport on " + host + ":" + port, e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.framework.util;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Util for Jackson.
+ *
+ * @author ykkz000
+ */
+public class JacksonUtil {
+    /**
+     * Property that enables the Blackbird module, which replaces reflective property access in serializers with
+     * generated lambdas. The module is an optional dependency and must be on the classpath.
+     */
+    public static final String BLACKBIRD_PROPERTY = "yukikaze.jackson.blackbird";
+    private static final String BLACKBIRD_MODULE = "com.fasterxml.jackson.module.blackbird.BlackbirdModule";
+
+    /**
+     * Register the Blackbird module. The module is loaded by name, so a missing module only logs a warning.
+     *
+     * @param objectMapper Object mapper.
+     * @return True if the module was registered.
+     */
+    public static boolean registerBlackbird(ObjectMapper objectMapper) {
+        Class<?> moduleClass;
+        try {
+            moduleClass = Class.forName(BLACKBIRD_MODULE, true, JacksonUtil.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            LoggerFactory.getLogger(JacksonUtil.class).warn("{} is set but the Blackbird module is not on the classpath", BLACKBIRD_PROPERTY);
+            return false;
+        }
+        try {
+            objectMapper.registerModule((Module) moduleClass.getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create " + BLACKBIRD_MODULE, e);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * yukikaze
+ * Copyright (C) 2024  ykkz000
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pers.ykkz000.yukikaze.framework.util;
+
+/**
+ * Util for parsing primitive values from a slice of a character sequence without allocating.
+ * The accepted syntax is the same as the parse methods of the boxed types.
+ *
+ * @author ykkz000
+ */
+public class ParseUtil {
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+    private static final long MAX_EXACT_DOUBLE_MANTISSA = 1L << 53;
+    private static final long MAX_EXACT_FLOAT_MANTISSA = 1L << 24;
+
+    /**
+     * Parse a long.
+     *
+     * @param s     Character sequence.
+     * @param start Start of the slice, inclusive.
+     * @param end   End of the slice, exclusive.
+     * @return Parsed value.
+     * @throws NumberFormatException If the slice is not a long.
+     */
+    public static long parseLong(CharSequence s, int start, int end) throws NumberFormatException {
+        if (start >= end) {
+            throw numberFormatException(s, start, end);
+        }
+        int i = start;
+        boolean negative = false;
+        long limit = -Long.MAX_VALUE;
+        char first = s.charAt(i);
+        if (first == '-' || first == '+') {
+            if (first == '-') {
+                negative = true;
+                limit = Long.MIN_VALUE;
+            }
+            if (++i == end) {
+                throw numberFormatException(s, start, end);
+            }
+        }
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                throw numberFormatException(s, start, end);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw numberFormatException(s, start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parse an int.
+     *
+     * @see #parseLong(CharSequence, int, int)
+     */
+    public static int parseInt(CharSequence s, int start, int end) throws NumberFormatException {
+        long value = parseLong(s, start, end);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw numberFormatException(s, start, end);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parse a short.
+     *
+     * @see #parseLong(CharSequence, int, int)
+     */
+    public static short parseShort(CharSequence s, int start, int end) throws NumberFormatException {
+        long value = parseLong(s, start, end);
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+            throw numberFormatException(s, start, end);
+        }
+        return (short) value;
+    }
+
+    /**
+     * Parse a byte.
+     *
+     * @see #parseLong(CharSequence, int, int)
+     */
+    public static byte parseByte(CharSequence s, int start, int end) throws NumberFormatException {
+        long value = parseLong(s, start, end);
+        if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+            throw numberFormatException(s, start, end);
+        }
+        return (byte) value;
+    }
+
+    /**
+     * Parse a boolean. Only "true", ignoring case, is true.
+     *
+     * @see #parseLong(CharSequence, int, int)
+     */
+    public static boolean parseBoolean(CharSequence s, int start, int end) {
+        return end - start == 4
+                && Character.toLowerCase(s.charAt(start)) == 't'
+                && Character.toLowerCase(s.charAt(start + 1)) == 'r'
+                && Character.toLowerCase(s.charAt(start + 2)) == 'u'
+                && Character.toLowerCase(s.charAt(start + 3)) == 'e';
+    }
+
+    /**
+     * Parse a double. Plain decimals with at most 15 significant digits and a small exponent are converted exactly
+     * without allocating; other input is delegated to {@link Double#parseDouble(String)}.
+     *
+     * @see #parseLong(CharSequence, int, int)
+     */
+    public static double parseDouble(CharSequence s, int start, int end) throws NumberFormatException {
+        double value = parseDecimal(s, start, end, false);
+        return Double.isNaN(value) ? Double.parseDouble(s.subSequence(start, end).toString()) : value;
+    }
+
+    /**
+     * Parse a float. Plain decimals with at most 7 significant digits and a small exponent are converted exactly
+     * without allocating; other input is delegated to {@link Float#parseFloat(String)}.
+     *
+     * @see #parseLong(CharSequence, int, int)
+     */
+    public static float parseFloat(CharSequence s, int start, int end) throws NumberFormatException {
+        double value = parseDecimal(s, start, end, true);
+        return Double.isNaN(value) ? Float.parseFloat(s.subSequence(start, end).toString()) : (float) value;
+    }
+
+    /**
+     * Convert a plain decimal whose mantissa and power of ten are both exact, so a single multiplication or division
+     * is correctly rounded.
+     *
+     * @return Converted value, or NaN if the input needs the slow path.
+     */
+    private static double parseDecimal(CharSequence s, int start, int end, boolean single) {
+        int i = start;
+        if (i == end) {
+            return Double.NaN;
+        }
+        boolean negative = false;
+        char first = s.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+        long mantissa = 0;
+        boolean anyDigit = false;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits > 17) {
+                    return Double.NaN;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                anyDigit = true;
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (point) {
+                    scale--;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (!anyDigit) {
+            return Double.NaN;
+        }
+        if (i < end) {
+            char c = s.charAt(i);
+            if ((c != 'e' && c != 'E') || ++i == end) {
+                return Double.NaN;
+            }
+            boolean negativeExponent = false;
+            c = s.charAt(i);
+            if (c == '-' || c == '+') {
+                negativeExponent = c == '-';
+                if (++i == end) {
+                    return Double.NaN;
+                }
+            }
+            int exponent = 0;
+            for (; i < end; i++) {
+                int digit = s.charAt(i) - '0';
+                if (digit < 0 || digit > 9 || exponent > 1000) {
+                    return Double.NaN;
+                }
+                exponent = exponent * 10 + digit;
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        double value;
+        if (single) {
+            if (mantissa > MAX_EXACT_FLOAT_MANTISSA || Math.abs(scale) >= FLOAT_POWERS_OF_TEN.length) {
+                return Double.NaN;
+            }
+            float floatValue = scale >= 0 ? mantissa * FLOAT_POWERS_OF_TEN[scale] : mantissa / FLOAT_POWERS_OF_TEN[-scale];
+            value = floatValue;
+        } else {
+            if (mantissa > MAX_EXACT_DOUBLE_MANTISSA || Math.abs(scale) >= DOUBLE_POWERS_OF_TEN.length) {
+                return Double.NaN;
+            }
+            value = scale >= 0 ? mantissa * DOUBLE_POWERS_OF_TEN[scale] : mantissa / DOUBLE_POWERS_OF_TEN[-scale];
+        }
+        return negative ? -value : value;
+    }
+
+    private static NumberFormatException numberFormatException(CharSequence s, int start, int end) {
+        return new NumberFormatException("For input string: \"" + s.subSequence(start, end) + "\"");
+    }
+}